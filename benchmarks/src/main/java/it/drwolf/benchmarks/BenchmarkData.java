@@ -0,0 +1,163 @@
+package it.drwolf.benchmarks;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+import it.drwolf.benchmarks.model.Purchase;
+
+/**
+ * The embedded H2 database of the benchmarks and the filters they search with
+ *
+ */
+public class BenchmarkData {
+
+	private static final int COUNTRIES = 20;
+
+	private static final int ADDRESSES = 1000;
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	/**
+	 * Filters by join depth: 0 are attributes of Purchase, 3 of
+	 * Purchase.customer.address.country. There are enough of them to build 8
+	 * distinct filters at every depth.
+	 */
+	private static final List<List<FilterParameter<?>>> FILTERS_BY_DEPTH = Arrays.asList(
+			Arrays.asList(new SingleAttributeFilter<>("amount", FilterOperator.GE, 100),
+					new SingleAttributeFilter<>("status", FilterOperator.EQ, Purchase.Status.PAID),
+					new SingleAttributeFilter<>("code", FilterOperator.LIKE, "P1%"),
+					new SingleAttributeFilter<>("paid", FilterOperator.IS_TRUE),
+					new SingleAttributeFilter<>("amount", FilterOperator.LE, 900),
+					new SingleAttributeFilter<>("code", FilterOperator.NOT_LIKE, "P9%"),
+					new SingleAttributeFilter<>("created", FilterOperator.IS_NOT_NULL),
+					new SingleAttributeFilter<>("status", FilterOperator.IS_NOT_NULL)),
+			Arrays.asList(new SingleAttributeFilter<>("customer.name", FilterOperator.LIKE, "Customer 1%"),
+					new SingleAttributeFilter<>("customer.vip", FilterOperator.IS_FALSE),
+					new SingleAttributeFilter<>("customer.email", FilterOperator.LIKE, "customer%"),
+					new SingleAttributeFilter<>("customer.email", FilterOperator.IS_NOT_NULL)),
+			Arrays.asList(new SingleAttributeFilter<>("customer.address.city", FilterOperator.LIKE, "City 1%"),
+					new SingleAttributeFilter<>("customer.address.zip", FilterOperator.LIKE, "1%"),
+					new SingleAttributeFilter<>("customer.address.zip", FilterOperator.IS_NOT_NULL)),
+			Arrays.asList(new SingleAttributeFilter<>("customer.address.country.name", FilterOperator.LIKE,
+					"Country 1%"),
+					new SingleAttributeFilter<>("customer.address.country.name", FilterOperator.IS_NOT_NULL)));
+
+	public static EntityManagerFactory createEntityManagerFactory() {
+		return Persistence.createEntityManagerFactory("benchmarks");
+	}
+
+	/**
+	 * Return filterCount filters: the i-th has a join depth of i % (joinDepth +
+	 * 1), so that deeper sets also filter the shallower entities
+	 *
+	 * @param filterCount: up to 8
+	 * @param joinDepth:   from 0 to 3
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	public static Set<FilterParameter> filters(int filterCount, int joinDepth) {
+		final Set<FilterParameter> filters = new HashSet<>();
+		for (int i = 0; i < filterCount; i++) {
+			List<FilterParameter<?>> candidates = BenchmarkData.FILTERS_BY_DEPTH.get(i % (joinDepth + 1));
+			filters.add(candidates.get(i / (joinDepth + 1) % candidates.size()));
+		}
+		return filters;
+	}
+
+	/**
+	 * Insert the purchases, with a customer every 10 purchases, with JDBC batches
+	 *
+	 * @param emf
+	 * @param purchases
+	 */
+	public static void seed(EntityManagerFactory emf, int purchases) {
+		final Random random = new Random(42);
+		final int customers = Math.max(1, purchases / 10);
+		final int addresses = Math.min(BenchmarkData.ADDRESSES, customers);
+		final long now = System.currentTimeMillis();
+
+		final EntityManager em = emf.createEntityManager();
+		try {
+			em.unwrap(Session.class).doWork(connection -> {
+				connection.setAutoCommit(false);
+				try (PreparedStatement insert = connection
+						.prepareStatement("INSERT INTO country (id, name) VALUES (?, ?)")) {
+					for (int i = 1; i <= BenchmarkData.COUNTRIES; i++) {
+						insert.setLong(1, i);
+						insert.setString(2, "Country " + i);
+						insert.addBatch();
+					}
+					insert.executeBatch();
+				}
+				try (PreparedStatement insert = connection
+						.prepareStatement("INSERT INTO address (id, city, zip, country_id) VALUES (?, ?, ?, ?)")) {
+					for (int i = 1; i <= addresses; i++) {
+						insert.setLong(1, i);
+						insert.setString(2, "City " + random.nextInt(100));
+						insert.setString(3, String.format("%05d", random.nextInt(100000)));
+						insert.setLong(4, 1 + random.nextInt(BenchmarkData.COUNTRIES));
+						insert.addBatch();
+						if (i % BenchmarkData.BATCH_SIZE == 0) {
+							insert.executeBatch();
+						}
+					}
+					insert.executeBatch();
+				}
+				try (PreparedStatement insert = connection.prepareStatement(
+						"INSERT INTO customer (id, name, email, vip, address_id) VALUES (?, ?, ?, ?, ?)")) {
+					for (int i = 1; i <= customers; i++) {
+						insert.setLong(1, i);
+						insert.setString(2, "Customer " + i);
+						insert.setString(3, "customer" + i + "@example.com");
+						insert.setBoolean(4, random.nextInt(20) == 0);
+						insert.setLong(5, 1 + random.nextInt(addresses));
+						insert.addBatch();
+						if (i % BenchmarkData.BATCH_SIZE == 0) {
+							insert.executeBatch();
+						}
+					}
+					insert.executeBatch();
+				}
+				try (PreparedStatement insert = connection.prepareStatement("INSERT INTO purchase"
+						+ " (id, code, amount, paid, created, status, customer_id) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+					final Purchase.Status[] statuses = Purchase.Status.values();
+					for (int i = 1; i <= purchases; i++) {
+						insert.setLong(1, i);
+						insert.setString(2, "P" + i);
+						insert.setInt(3, random.nextInt(1000));
+						insert.setBoolean(4, random.nextBoolean());
+						insert.setTimestamp(5, new Timestamp(now - random.nextInt(365) * BenchmarkData.DAY_MILLIS));
+						insert.setString(6, statuses[random.nextInt(statuses.length)].name());
+						insert.setLong(7, 1 + random.nextInt(customers));
+						insert.addBatch();
+						if (i % BenchmarkData.BATCH_SIZE == 0) {
+							insert.executeBatch();
+						}
+					}
+					insert.executeBatch();
+				}
+				connection.commit();
+			});
+		} finally {
+			em.close();
+		}
+	}
+
+}
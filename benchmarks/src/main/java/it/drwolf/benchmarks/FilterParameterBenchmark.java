@@ -0,0 +1,55 @@
+package it.drwolf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+/**
+ * Construction of FilterParameters, that parses the path in join and field
+ * names
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterParameterBenchmark {
+
+	@Param({ "amount", "customer.name", "customer.address.country.name" })
+	private String path;
+
+	private String[] pathSegments;
+
+	@Benchmark
+	public FilterParameter<String> fromPath() {
+		return new SingleAttributeFilter<>(this.path, FilterOperator.EQ, "value");
+	}
+
+	@Benchmark
+	public FilterParameter<String> fromStream() {
+		return new SingleAttributeFilter<>(Stream.of(this.pathSegments), FilterOperator.EQ, "value");
+	}
+
+	@Setup
+	public void setUp() {
+		this.pathSegments = this.path.split("\\.");
+	}
+
+}
@@ -0,0 +1,8 @@
+package it.drwolf.benchmarks;
+
+import it.drwolf.base.daos.BaseEntityDAO;
+import it.drwolf.benchmarks.model.Purchase;
+
+public class PurchaseDAO extends BaseEntityDAO<Purchase> {
+
+}
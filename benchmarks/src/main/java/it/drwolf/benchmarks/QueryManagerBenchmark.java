@@ -0,0 +1,123 @@
+package it.drwolf.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.QueryManager;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.benchmarks.model.Purchase;
+
+/**
+ * Criteria building of QueryManager, without executing queries. Each operation
+ * creates a new CriteriaQuery and QueryManager, as BaseEntityDAO does for every
+ * search, so that joins are made again: createQueryManager measures that part
+ * alone.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryManagerBenchmark {
+
+	@State(Scope.Thread)
+	public static class Criteria {
+
+		private EntityManagerFactory emf;
+
+		private EntityManager em;
+
+		private CriteriaBuilder criteriaBuilder;
+
+		QueryManager<Purchase> createQueryManager() {
+			return new QueryManager<>(this.criteriaBuilder.createQuery(Purchase.class).from(Purchase.class));
+		}
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.emf = BenchmarkData.createEntityManagerFactory();
+			this.em = this.emf.createEntityManager();
+			this.criteriaBuilder = this.em.getCriteriaBuilder();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			this.em.close();
+			this.emf.close();
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class Filters {
+
+		@Param({ "1", "4", "8" })
+		private int filterCount;
+
+		@Param({ "0", "1", "2", "3" })
+		private int joinDepth;
+
+		@SuppressWarnings("rawtypes")
+		private Set<FilterParameter> filters;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.filters = BenchmarkData.filters(this.filterCount, this.joinDepth);
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class Ordering {
+
+		@Param({ "amount", "customer.name", "customer.address.city" })
+		private String orderField;
+
+		private OrderParameter order;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			this.order = new OrderParameter(this.orderField, OrderParameter.OrderType.ASC);
+		}
+
+	}
+
+	@Benchmark
+	public Order buildCriteriaOrder(Criteria criteria, Ordering ordering) {
+		return criteria.createQueryManager().buildCriteriaOrder(criteria.criteriaBuilder, ordering.order, true);
+	}
+
+	@Benchmark
+	public List<Predicate> buildPredicatesList(Criteria criteria, Filters filters) {
+		return criteria.createQueryManager().buildPredicatesList(criteria.criteriaBuilder, filters.filters);
+	}
+
+	@Benchmark
+	public QueryManager<Purchase> createQueryManager(Criteria criteria) {
+		return criteria.createQueryManager();
+	}
+
+}
@@ -0,0 +1,95 @@
+package it.drwolf.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.PaginatedData;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.benchmarks.model.Purchase;
+
+/**
+ * Full BaseEntityDAO searches, count and page queries included, against the
+ * embedded H2 database. Every operation uses a new EntityManager, as a request
+ * does.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+	@Param({ "10000", "100000" })
+	private int purchases;
+
+	@Param({ "1", "4" })
+	private int filterCount;
+
+	@Param({ "0", "2" })
+	private int joinDepth;
+
+	private final PurchaseDAO dao = new PurchaseDAO();
+
+	private EntityManagerFactory emf;
+
+	@SuppressWarnings("rawtypes")
+	private Set<FilterParameter> filters;
+
+	private final OrderParameter order = new OrderParameter("created", OrderParameter.OrderType.DESC);
+
+	private final PageParameter page = new PageParameter(1, 20);
+
+	@Benchmark
+	public PaginatedData<Purchase> getAll() {
+		final EntityManager em = this.emf.createEntityManager();
+		try {
+			return this.dao.getAll(em, this.order, this.page);
+		} finally {
+			em.close();
+		}
+	}
+
+	@Benchmark
+	public PaginatedData<Purchase> search() {
+		final EntityManager em = this.emf.createEntityManager();
+		try {
+			return this.dao.search(em, this.filters, this.order, this.page);
+		} finally {
+			em.close();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.emf = BenchmarkData.createEntityManagerFactory();
+		BenchmarkData.seed(this.emf, this.purchases);
+		this.filters = BenchmarkData.filters(this.filterCount, this.joinDepth);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.emf.close();
+	}
+
+}
@@ -0,0 +1,47 @@
+package it.drwolf.benchmarks.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+@Table(name = "address")
+public class Address extends BaseEntity {
+
+	@Id
+	private Long id;
+
+	@Column(name = "city")
+	private String city;
+
+	@Column(name = "zip")
+	private String zip;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "country_id")
+	private Country country;
+
+	public String getCity() {
+		return this.city;
+	}
+
+	public Country getCountry() {
+		return this.country;
+	}
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public String getZip() {
+		return this.zip;
+	}
+
+}
@@ -0,0 +1,29 @@
+package it.drwolf.benchmarks.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+@Table(name = "country")
+public class Country extends BaseEntity {
+
+	@Id
+	private Long id;
+
+	@Column(name = "name")
+	private String name;
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+}
@@ -0,0 +1,64 @@
+package it.drwolf.benchmarks.model;
+
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+@Table(name = "customer")
+public class Customer extends BaseEntity {
+
+	@Id
+	private Long id;
+
+	@Column(name = "name")
+	private String name;
+
+	@Column(name = "email")
+	private String email;
+
+	@Column(name = "vip")
+	private boolean vip;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "address_id")
+	private Address address;
+
+	@OneToMany(mappedBy = "customer")
+	private List<Purchase> purchases;
+
+	public Address getAddress() {
+		return this.address;
+	}
+
+	public String getEmail() {
+		return this.email;
+	}
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public List<Purchase> getPurchases() {
+		return this.purchases;
+	}
+
+	public boolean isVip() {
+		return this.vip;
+	}
+
+}
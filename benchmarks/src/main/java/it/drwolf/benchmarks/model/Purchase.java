@@ -0,0 +1,80 @@
+package it.drwolf.benchmarks.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+@Table(name = "purchase")
+public class Purchase extends BaseEntity {
+
+	public enum Status {
+		NEW, PAID, SHIPPED, CANCELLED
+	}
+
+	@Id
+	private Long id;
+
+	@Column(name = "code")
+	private String code;
+
+	@Column(name = "amount")
+	private Integer amount;
+
+	@Column(name = "paid")
+	private boolean paid;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "created")
+	private Date created;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status")
+	private Status status;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "customer_id")
+	private Customer customer;
+
+	public Integer getAmount() {
+		return this.amount;
+	}
+
+	public String getCode() {
+		return this.code;
+	}
+
+	public Date getCreated() {
+		return this.created;
+	}
+
+	public Customer getCustomer() {
+		return this.customer;
+	}
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public Status getStatus() {
+		return this.status;
+	}
+
+	public boolean isPaid() {
+		return this.paid;
+	}
+
+}
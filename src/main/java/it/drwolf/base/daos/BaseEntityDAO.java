@@ -1,28 +1,117 @@
 package it.drwolf.base.daos;
 
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.sql.Connection;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Subgraph;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CommonAbstractCriteria;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
+import javax.persistence.criteria.Subquery;
+import javax.persistence.metamodel.Attribute;
+import javax.transaction.Synchronization;
 
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.internal.util.SerializationHelper;
+import org.hibernate.mapping.Column;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.hibernate.type.AbstractStandardBasicType;
+import org.hibernate.type.Type;
+import org.hibernate.type.descriptor.java.JavaTypeDescriptor;
+
+import it.drwolf.base.daos.common.BatchResult;
+import it.drwolf.base.daos.common.BoundedCache;
+import it.drwolf.base.daos.common.CachePolicy;
+import it.drwolf.base.daos.common.CacheStatistics;
+import it.drwolf.base.daos.common.CountResult;
+import it.drwolf.base.daos.common.CountStrategy;
+import it.drwolf.base.daos.common.CursorPaginatedData;
+import it.drwolf.base.daos.common.CursorParameter;
+import it.drwolf.base.daos.common.FetchPlan;
+import it.drwolf.base.daos.common.InListUtils;
 import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.PageCursor;
 import it.drwolf.base.daos.common.PageParameter;
 import it.drwolf.base.daos.common.PaginatedData;
+import it.drwolf.base.daos.common.Projection;
 import it.drwolf.base.daos.common.QueryManager;
+import it.drwolf.base.daos.common.QueryMetrics;
+import it.drwolf.base.daos.common.QueryShape;
+import it.drwolf.base.daos.common.StatementCounter;
+import it.drwolf.base.daos.common.TemporaryIdTable;
+import it.drwolf.base.daos.common.exceptions.FilterParameterException;
+import it.drwolf.base.daos.common.filter.CollectionAttributeFilter;
+import it.drwolf.base.daos.common.filter.FilterGroup;
+import it.drwolf.base.daos.common.filter.FilterOperator;
 import it.drwolf.base.daos.common.filter.FilterParameter;
 import it.drwolf.base.interfaces.Loggable;
 import it.drwolf.base.model.entities.BaseEntity;
 import it.drwolf.exceptions.HttpException;
+import it.drwolf.jpa.RevisionJPAApi;
 
 /**
  * BaseEntityDAO is an abstract DAO that provides basic functionalities to manage
@@ -34,8 +123,57 @@ import it.drwolf.exceptions.HttpException;
  */
 public abstract class BaseEntityDAO<T extends BaseEntity> implements Loggable {
 
+	/**
+	 * The measure of a Stream: the time and the statements spent by the steps run through step(), and the entities
+	 * returned
+	 *
+	 */
+	private static class StreamMeasure {
+
+		private final StatementCounter counter;
+
+		private long nanos;
+
+		private long statements;
+
+		private long rows;
+
+		private boolean failed;
+
+		StreamMeasure(StatementCounter counter) {
+			this.counter = counter;
+		}
+
+		<R> R step(Supplier<R> supplier) {
+			this.counter.enter();
+			final long start = System.nanoTime();
+			final long before = this.counter.getCount();
+			boolean completed = false;
+			try {
+				final R result = supplier.get();
+				completed = true;
+				return result;
+			} finally {
+				this.nanos += System.nanoTime() - start;
+				this.statements += this.counter.getCount() - before;
+				this.failed |= !completed;
+				this.counter.exit();
+			}
+		}
+
+	}
+
 	protected final Class<T> resourceClass;
 
+	private volatile BoundedCache<QueryShape, String> compiledQueries;
+
+	private volatile BoundedCache<Object, T> entityCache;
+
+	/**
+	 * TRUE inside readOnly(supplier)
+	 */
+	private final ThreadLocal<Boolean> readOnlyScope = new ThreadLocal<>();
+
 	public enum QueryType {
 		ENTITIES, IDS, COUNT
 	}
@@ -48,14 +186,21 @@ public abstract class BaseEntityDAO<T extends BaseEntity> implements Loggable {
 
 	protected <V> CriteriaQuery<V> buildCriteriaQuery(EntityManager em, QueryType queryType, Class<V> clazz,
 			Set<FilterParameter> filters, OrderParameter order) {
+		return this.buildCriteriaQuery(em, queryType, clazz, order,
+				(criteriaBuilder, queryManager) -> queryManager.buildPredicatesList(criteriaBuilder, filters));
+	}
+
+	private <V> CriteriaQuery<V> buildCriteriaQuery(EntityManager em, QueryType queryType, Class<V> clazz,
+			OrderParameter order, BiFunction<CriteriaBuilder, QueryManager<T>, List<Predicate>> predicatesBuilder) {
 
 		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
 
 		CriteriaQuery<V> query = criteriaBuilder.createQuery(clazz);
 		Root<T> root = query.from(this.resourceClass);
 
-		final QueryManager<T> queryManager = new QueryManager<>(root);
-		final List<Predicate> predicates = queryManager.buildPredicatesList(criteriaBuilder, filters);
+		final QueryManager<T> queryManager = new QueryManager<>(root, this.getInListChunkSize(),
+				this.getMaxParameters());
+		final List<Predicate> predicates = predicatesBuilder.apply(criteriaBuilder, queryManager);
 
 		if (queryType.equals(QueryType.COUNT)) {
 			query.select((Selection<? extends V>) criteriaBuilder.countDistinct(root.get("id")));
@@ -68,230 +213,2246 @@ public abstract class BaseEntityDAO<T extends BaseEntity> implements Loggable {
 		if (order != null && !queryType.equals(QueryType.COUNT)) {
 			Order orderBy = queryManager.buildCriteriaOrder(criteriaBuilder, order, true);
 			query.orderBy(orderBy);
+			if (queryType.equals(QueryType.IDS)) {
+				// a sorting value coming from a joined entity must be grouped too
+				query.groupBy(root.get("id"), orderBy.getExpression());
+			}
 		}
 
 		return query.where(predicates.toArray(new Predicate[predicates.size()]));
 	}
 
-	protected int calculateFirstResult(int page, int size) {
-		int first = 0;
-		if (page * size > size) {
-			first = (page * size) - size;
-		}
-		return first;
-	}
-
 	/**
-	 * Return a count of all entities of specified type
+	 * Apply the hints of the DAO to a read query: the CachePolicy and, inside readOnly(supplier),
+	 * org.hibernate.readOnly
 	 *
-	 * @param em
-	 * @return total count
+	 * @param query
+	 * @return the query
 	 */
-	public Long countAll(EntityManager em) {
-		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
-		CriteriaQuery<Long> countQuery = criteriaBuilder.createQuery(Long.class);
-		countQuery.select(criteriaBuilder.count(countQuery.from(this.resourceClass)));
-		return em.createQuery(countQuery).getSingleResult();
+	protected <Q extends javax.persistence.Query> Q applyQueryHints(Q query) {
+		this.applyCachePolicy(query);
+		if (Boolean.TRUE.equals(this.readOnlyScope.get())) {
+			query.setHint(QueryHints.READ_ONLY, true);
+		}
+		return query;
 	}
 
 	/**
-	 * Create an entity instance of specified type
+	 * Mark the query cacheable in the query cache region of the DAO if its CachePolicy caches queries
 	 *
-	 * @param em
-	 * @return
+	 * @param query
+	 * @return the same query
 	 */
-	protected void create(EntityManager em, T entity) {
-		em.persist(entity);
+	protected <Q extends javax.persistence.Query> Q applyCachePolicy(Q query) {
+		final CachePolicy policy = this.getCachePolicy();
+		if (policy.isQueryCacheable()) {
+			query.setHint(QueryHints.CACHEABLE, true);
+			query.setHint(QueryHints.CACHE_REGION, this.getQueryCacheRegion());
+		}
+		return query;
 	}
 
 	/**
-	 * Delete the entity instance
+	 * Run the action when the transaction of em completes, committed or rolled back. Nothing is run if em is not in
+	 * a transaction.
 	 *
 	 * @param em
-	 * @param entity
+	 * @param action
 	 */
-	public void delete(EntityManager em, T entity) {
-		em.remove(entity);
+	private void afterCompletion(EntityManager em, Runnable action) {
+		if (!em.isJoinedToTransaction()) {
+			return;
+		}
+		em.unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+
+			@Override
+			public void afterCompletion(int status) {
+				action.run();
+			}
+
+			@Override
+			public void beforeCompletion() {
+			}
+
+		});
 	}
 
 	/**
-	 * Find by primary key.<br>
-	 * Return an Optional containing (or not) an entity of the specified type
+	 * Return the result of a count started by startCount, or an UNKNOWN total if a parallel count doesn't complete
+	 * within getCountTimeout()
 	 *
-	 * @param em
-	 * @param id: primary key (@Id) of the entity instance
-	 * @return an Optional of nullable
+	 * @param countFuture
+	 * @return
 	 */
-	public Optional<T> find(EntityManager em, Object id) {
-		return Optional.ofNullable(em.find(this.resourceClass, id));
+	private CountResult awaitCount(CompletableFuture<CountResult> countFuture) {
+		try {
+			return countFuture.get(this.getCountTimeout().toMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			this.logger().warn("Count of {} didn't complete in {}, total is unknown", this.resourceClass,
+					this.getCountTimeout());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return new CountResult(null, PaginatedData.TotalType.UNKNOWN, null);
 	}
 
 	/**
-	 * Find by primary key.<br>
-	 * Return an entity of the specified type
+	 * Build the EntityGraph of a FetchPlan: the named graph of the entity, or a graph with a subgraph for each
+	 * association that is followed by another one in the plan's paths.
 	 *
 	 * @param em
-	 * @param id: primary key (@Id) of the entity instance
-	 * @return an Optional of nullable
-	 * @throws HttpException (NOT_FOUND) if not present
+	 * @param fetchPlan
+	 * @return
+	 * @throws IllegalArgumentException if the named graph or an attribute doesn't exist
 	 */
-	public T get(EntityManager em, Object id) {
-		return this.find(em, id)
-				.orElseThrow(() -> new HttpException(String.format("%s #%s not found", this.resourceClass, id),
-						HttpException.Status.NOT_FOUND));
+	@SuppressWarnings("unchecked")
+	protected EntityGraph<T> buildEntityGraph(EntityManager em, FetchPlan fetchPlan) {
+		if (fetchPlan.getGraphName() != null) {
+			return (EntityGraph<T>) em.getEntityGraph(fetchPlan.getGraphName());
+		}
+
+		final Set<String> parentPaths = new HashSet<>();
+		for (String path : fetchPlan.getPaths()) {
+			for (int dot = path.indexOf('.'); dot > -1; dot = path.indexOf('.', dot + 1)) {
+				parentPaths.add(path.substring(0, dot));
+			}
+		}
+
+		final EntityGraph<T> graph = em.createEntityGraph(this.resourceClass);
+		final Map<String, Subgraph<Object>> subgraphs = new HashMap<>();
+		for (String path : fetchPlan.getPaths()) {
+			if (parentPaths.contains(path)) {
+				// added as a subgraph by the longer paths
+				continue;
+			}
+			Subgraph<Object> parent = null;
+			String[] attributeNames = path.split("\\.");
+			for (int i = 0; i < attributeNames.length - 1; i++) {
+				String subgraphPath = String.join(".", Arrays.copyOfRange(attributeNames, 0, i + 1));
+				Subgraph<Object> subgraph = subgraphs.get(subgraphPath);
+				if (subgraph == null) {
+					subgraph = parent == null ? graph.addSubgraph(attributeNames[i])
+							: parent.addSubgraph(attributeNames[i]);
+					subgraphs.put(subgraphPath, subgraph);
+				}
+				parent = subgraph;
+			}
+			String attributeName = attributeNames[attributeNames.length - 1];
+			if (parent == null) {
+				graph.addAttributeNodes(attributeName);
+			} else {
+				parent.addAttributeNodes(attributeName);
+			}
+		}
+		return graph;
+	}
+
+	private Map<String, Object> buildFetchHints(EntityManager em, FetchPlan fetchPlan) {
+		final Map<String, Object> hints = new HashMap<>();
+		if (fetchPlan != null && !fetchPlan.isEmpty()) {
+			hints.put(fetchPlan.getGraphType().getHint(), this.buildEntityGraph(em, fetchPlan));
+		}
+		return hints;
 	}
 
 	/**
-	 * Return all entities of specified type
+	 * Build the restriction of a bulk update or delete from a list of FilterParameter. Filters on attributes of the
+	 * root entity are applied directly, joined paths are resolved through a subquery that selects the ids of the
+	 * matching rows, since bulk statements can't contain joins.
 	 *
-	 * @param em
+	 * @param criteriaBuilder
+	 * @param bulkQuery
+	 * @param root:           the root of the bulk statement
+	 * @param filters
 	 * @return
 	 */
-	public List<T> getAll(EntityManager em) {
-		return em.createQuery("from " + this.resourceClass.getName(), this.resourceClass).getResultList();
+	private Predicate[] buildBulkPredicates(CriteriaBuilder criteriaBuilder, CommonAbstractCriteria bulkQuery,
+			Root<T> root, Set<FilterParameter> filters) {
+
+		boolean joined = FilterGroup.anyMatch(filters, f -> !f.getJoinName().equals(FilterParameter.ROOT));
+		if (!joined) {
+			final QueryManager<T> queryManager = new QueryManager<>(root, this.getInListChunkSize(),
+				this.getMaxParameters());
+			List<Predicate> predicates = queryManager.buildPredicatesList(criteriaBuilder, filters);
+			return predicates.toArray(new Predicate[predicates.size()]);
+		}
+
+		Subquery<Object> ids = bulkQuery.subquery(Object.class);
+		Root<T> subRoot = ids.from(this.resourceClass);
+		final QueryManager<T> queryManager = new QueryManager<>(subRoot, this.getInListChunkSize(),
+				this.getMaxParameters());
+		List<Predicate> predicates = queryManager.buildPredicatesList(criteriaBuilder, filters);
+		ids.select(subRoot.get("id")).where(predicates.toArray(new Predicate[predicates.size()]));
+
+		return new Predicate[] { root.get("id").in(ids) };
 	}
 
 	/**
-	 * Return a single page of all entities of specified type
+	 * Build the query of a projection search: the attributes listed in the Projection are selected as Tuple or
+	 * passed to the constructor of dtoClass, joining the associations they go through.
 	 *
 	 * @param em
-	 * @param page: PageParameter instance with info about page number, page size
-	 *              and sorting
-	 * @return an instance of PaginatedData
+	 * @param projection
+	 * @param dtoClass:   Tuple or a class with a public constructor taking the selected attributes
+	 * @param filters
+	 * @param order:      can be NULL
+	 * @return
 	 */
-	public PaginatedData<T> getAll(EntityManager em, PageParameter page) {
-		return this.getAll(em, null, page);
+	protected <D> CriteriaQuery<D> buildProjectionCriteriaQuery(EntityManager em, Projection projection,
+			Class<D> dtoClass, Set<FilterParameter> filters, OrderParameter order) {
+
+		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+
+		CriteriaQuery<D> query = criteriaBuilder.createQuery(dtoClass);
+		Root<T> root = query.from(this.resourceClass);
+
+		final QueryManager<T> queryManager = new QueryManager<>(root, this.getInListChunkSize(),
+				this.getMaxParameters());
+		final List<Predicate> predicates = queryManager.buildPredicatesList(criteriaBuilder, filters);
+
+		final List<Selection<?>> selections = new ArrayList<>();
+		// rows are grouped by id like the entities search, so that filters through collections don't repeat them
+		final List<Expression<?>> grouping = new ArrayList<>();
+		grouping.add(root.get("id"));
+		for (String path : projection.getPaths()) {
+			// LEFT joins, like the count: a missing association selects NULL instead of dropping the row
+			Path<?> attribute = queryManager.findOrMakePath(path, JoinType.LEFT);
+			selections.add(attribute.alias(Projection.alias(path)));
+			grouping.add(attribute);
+		}
+
+		if (dtoClass.equals(Tuple.class)) {
+			query.multiselect(selections);
+		} else {
+			query.select(criteriaBuilder.construct(dtoClass, selections.toArray(new Selection<?>[selections.size()])));
+		}
+
+		if (order != null) {
+			Order orderBy = queryManager.buildCriteriaOrder(criteriaBuilder, order, true);
+			query.orderBy(orderBy);
+			grouping.add(orderBy.getExpression());
+		}
+
+		return query.groupBy(grouping).where(predicates.toArray(new Predicate[predicates.size()]));
 	}
 
 	/**
-	 * Return a single page of entities of specified type sorted by info contained
-	 * in OrderParameter
+	 * Build the query of a keyset (seek) pagination: rows are sorted by the OrderParameter and then by "id" as
+	 * tiebreaker, and only the rows that follow (or precede) the cursor are selected.<br>
+	 * When the cursor points backward the sorting is reversed.
 	 *
 	 * @param em
-	 * @param page:  contain pagination info
-	 * @param order: contains sorting info
-	 * @return an instance of PaginatedData
+	 * @param filters
+	 * @param order:   NULL to sort by "id" only
+	 * @param cursor:  NULL to select the first page
+	 * @return
 	 */
-	public PaginatedData<T> getAll(EntityManager em, OrderParameter order, PageParameter page) {
-		final Long total = this.countAll(em);
-		final List<Predicate> predicates = new ArrayList<>();
+	protected CriteriaQuery<T> buildKeysetCriteriaQuery(EntityManager em, Set<FilterParameter> filters,
+			OrderParameter order, PageCursor cursor) {
+
 		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
 
 		CriteriaQuery<T> query = criteriaBuilder.createQuery(this.resourceClass);
-		Root<T> rootItemDefinition = query.from(this.resourceClass);
-		query.select(rootItemDefinition).where(predicates.toArray(new Predicate[predicates.size()]));
+		Root<T> root = query.from(this.resourceClass);
 
-		this.handleOrderParameter(criteriaBuilder, query, rootItemDefinition, order);
+		final QueryManager<T> queryManager = new QueryManager<>(root, this.getInListChunkSize(),
+				this.getMaxParameters());
+		final List<Predicate> predicates = queryManager.buildPredicatesList(criteriaBuilder, filters);
 
-		final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
-		List<T> elements = em.createQuery(query).setFirstResult(first).setMaxResults(page.getSize()).getResultList();
+		boolean ascending = order == null || order.getOrderType().equals(OrderParameter.OrderType.ASC);
+		if (cursor != null && cursor.getDirection().equals(PageCursor.Direction.PREVIOUS)) {
+			ascending = !ascending;
+		}
+
+		final List<Order> orders = new ArrayList<>();
+		Expression<?> orderExpression = null;
+		if (order != null) {
+			Order orderBy = queryManager.buildCriteriaOrder(criteriaBuilder, order, true);
+			orderExpression = orderBy.getExpression();
+			orders.add(orderBy.isAscending() == ascending ? orderBy : orderBy.reverse());
+		}
+		orders.add(ascending ? criteriaBuilder.asc(root.get("id")) : criteriaBuilder.desc(root.get("id")));
 
-		return new PaginatedData<>(elements, page.getPageNumber(), page.getSize(), total.intValue());
+		if (cursor != null) {
+			Object orderValue = orderExpression != null ? cursor.getOrderValue(orderExpression.getJavaType()) : null;
+			Object id = cursor.getId(root.get("id").getJavaType());
+			predicates.add(
+					queryManager.buildKeysetPredicate(criteriaBuilder, orderExpression, orderValue, id, ascending));
+		}
+
+		query.select(root).orderBy(orders);
+		if (orderExpression != null) {
+			// a sorting value coming from a joined entity must be grouped too
+			query.groupBy(root.get("id"), orderExpression);
+		} else {
+			query.groupBy(root.get("id"));
+		}
+
+		return query.where(predicates.toArray(new Predicate[predicates.size()]));
 	}
 
 	/**
-	 * Return all entities of specified type that have their id in the ids set
+	 * Same as buildCriteriaQuery(...), but the filters' values are not part of the query: each filter is compared
+	 * with the named parameters QueryManager.getParameterBindings(filter, index of the filter in the list,
+	 * getInListChunkSize())
 	 *
 	 * @param em
-	 * @param ids
+	 * @param queryType
+	 * @param clazz
+	 * @param filters
+	 * @param order
 	 * @return
 	 */
-	public List<T> getIfInIdSet(EntityManager em, Set<? extends Object> ids) {
-		if (!ids.isEmpty()) {
-			return em.createQuery("FROM " + this.resourceClass.getName() + " en WHERE en.id IN(:ids)",
-					this.resourceClass).setParameter("ids", ids).getResultList();
-		} else {
-			return new ArrayList<>();
+	protected <V> CriteriaQuery<V> buildParameterizedCriteriaQuery(EntityManager em, QueryType queryType,
+			Class<V> clazz, List<FilterParameter> filters, OrderParameter order) {
+		return this.buildCriteriaQuery(em, queryType, clazz, order,
+				(criteriaBuilder, queryManager) -> queryManager.buildParameterizedPredicatesList(criteriaBuilder,
+						filters));
+	}
+
+	private String buildPageCursor(EntityManager em, T entity, OrderParameter order, PageCursor.Direction direction) {
+		Object orderValue = order != null ? this.readPathValue(em, entity, order.getOrderField()) : null;
+		return PageCursor.of(direction, orderValue, entity.getId()).encode();
+	}
+
+	protected int calculateFirstResult(int page, int size) {
+		int first = 0;
+		if (page * size > size) {
+			first = (page * size) - size;
 		}
+		return first;
+	}
+
+	/**
+	 * Return a count of all entities of specified type
+	 *
+	 * @param em
+	 * @return total count
+	 */
+	public Long countAll(EntityManager em) {
+		return this.measure(em, QueryMetrics.Operation.COUNT_ALL, null, () -> {
+			CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+			CriteriaQuery<Long> countQuery = criteriaBuilder.createQuery(Long.class);
+			countQuery.select(criteriaBuilder.count(countQuery.from(this.resourceClass)));
+			return this.applyQueryHints(em.createQuery(countQuery)).getSingleResult();
+		});
 	}
 
 	/**
-	 * Return all entities of specified type that don't have their id in the ids set
+	 * Return a count of the entities of specified type filtered by a list of FilterParameter, computed with the
+	 * given CountStrategy.<br>
+	 * CAPPED asks the database for the id after the first getCountCap() matching rows: if there is one the total is
+	 * MORE_THAN the cap, otherwise the exact count reads at most as many rows. ESTIMATED falls back on CAPPED with
+	 * filters and on EXACT when the estimate is not available: the strategy used is reported by the CountResult.
 	 *
 	 * @param em
-	 * @param ids
-	 * @return
+	 * @param filters
+	 * @param strategy
+	 * @return the total and how it has been computed
 	 */
-	public List<T> getIfNotInIdSet(EntityManager em, Set<? extends Object> ids) {
-		if (!ids.isEmpty()) {
-			return em.createQuery("FROM " + this.resourceClass.getName() + " en WHERE en.id NOT IN(:ids)",
-					this.resourceClass).setParameter("ids", ids).getResultList();
-		} else {
-			return this.getAll(em);
+	protected CountResult count(EntityManager em, Set<FilterParameter> filters, CountStrategy strategy) {
+		if (strategy.equals(CountStrategy.ESTIMATED)) {
+			if (!filters.isEmpty()) {
+				// the planner estimate of a filtered query needs the rendered SQL, a capped count is as cheap
+				this.logger().debug("Filtered count of {} can't be estimated, fall back on capped count",
+						this.resourceClass);
+				return this.count(em, filters, CountStrategy.CAPPED);
+			}
+			Optional<Long> estimate = this.estimateCountAll(em);
+			if (estimate.isPresent()) {
+				return new CountResult(estimate.get(), PaginatedData.TotalType.ESTIMATED, CountStrategy.ESTIMATED);
+			}
+			this.logger().debug("Row estimate of {} not available, fall back on exact count", this.resourceClass);
+		} else if (strategy.equals(CountStrategy.CAPPED)) {
+			final int cap = this.getCountCap();
+			// HQL has no LIMIT in subqueries: the database skips the first cap rows and returns one id at most
+			final boolean moreThanCap = !this.createQuery(em, QueryType.IDS, Object.class, filters, null)
+					.setFirstResult(cap)
+					.setMaxResults(1)
+					.getResultList()
+					.isEmpty();
+			if (moreThanCap) {
+				return new CountResult((long) cap, PaginatedData.TotalType.MORE_THAN, CountStrategy.CAPPED);
+			}
+			Long count = this.createQuery(em, QueryType.COUNT, Long.class, filters, null).getSingleResult();
+			return new CountResult(count, PaginatedData.TotalType.EXACT, CountStrategy.CAPPED);
 		}
+
+		Long count = this.createQuery(em, QueryType.COUNT, Long.class, filters, null).getSingleResult();
+		return new CountResult(count, PaginatedData.TotalType.EXACT, CountStrategy.EXACT);
 	}
 
-	@Deprecated
-	protected void handleOrderParameter(CriteriaBuilder criteriaBuilder, CriteriaQuery<T> query, Root<T> rootElement,
-			OrderParameter order) {
-		if (order != null) {
-			if (order.getOrderType().equals(OrderParameter.OrderType.ASC)) {
-				query.orderBy(criteriaBuilder.asc(rootElement.get(order.getOrderField())));
-			} else if (order.getOrderType().equals(OrderParameter.OrderType.DESC)) {
-				query.orderBy(criteriaBuilder.desc(rootElement.get(order.getOrderField())));
+	/**
+	 * Count in the read-only transaction of countEm. Queries are given getCountTimeout() as
+	 * javax.persistence.query.timeout, so that counts nobody waits for anymore don't hold the connection.
+	 *
+	 * @param countEm
+	 * @param filters
+	 * @param strategy
+	 * @return
+	 */
+	private CountResult countInReadOnlyTransaction(EntityManager countEm, Set<FilterParameter> filters,
+			CountStrategy strategy) {
+		countEm.setProperty("javax.persistence.query.timeout", (int) this.getCountTimeout().toMillis());
+		return this.measure(countEm, QueryMetrics.Operation.SEARCH_COUNT, filters,
+				() -> this.count(countEm, filters, strategy));
+	}
+
+	/**
+	 * Count with a new EntityManager of emf in a read-only transaction, that is rolled back. Used by the parallel
+	 * count of the DAOs without a RevisionJPAApi.
+	 *
+	 * @param emf
+	 * @param filters
+	 * @param strategy
+	 * @return
+	 */
+	private CountResult countInReadOnlyTransaction(EntityManagerFactory emf, Set<FilterParameter> filters,
+			CountStrategy strategy) {
+		final EntityManager countEm = emf.createEntityManager();
+		try {
+			final Session session = countEm.unwrap(Session.class);
+			session.setDefaultReadOnly(true);
+			session.setHibernateFlushMode(FlushMode.MANUAL);
+			countEm.getTransaction().begin();
+			try {
+				return this.countInReadOnlyTransaction(countEm, filters, strategy);
+			} finally {
+				countEm.getTransaction().rollback();
 			}
+		} finally {
+			countEm.close();
 		}
 	}
 
 	/**
-	 * Persiste or update an entity of specified type and return it
+	 * Create an entity instance of specified type
 	 *
 	 * @param em
-	 * @param entity
 	 * @return
 	 */
-	public T save(EntityManager em, T entity) {
-		if (entity.getId() == null) {
-			this.create(em, entity);
-			return entity;
-		} else {
-			return this.update(em, entity);
-		}
+	protected void create(EntityManager em, T entity) {
+		em.persist(entity);
 	}
 
 	/**
-	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
-	 * and filtered by a list of FilterParameter. All filters are combined in AND.
+	 * Create the TypedQuery of a search built by buildCriteriaQuery(...).<br>
+	 * When the query cache is enabled (see isQueryCacheEnabled()) the JPQL of each QueryShape is rendered once and
+	 * reused by the following searches with the same shape, which only bind the filters' values.
 	 *
 	 * @param em
+	 * @param queryType
+	 * @param clazz
 	 * @param filters
 	 * @param order
-	 * @param page
 	 * @return
 	 */
-	public PaginatedData<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
-			PageParameter page) {
+	protected <V> TypedQuery<V> createQuery(EntityManager em, QueryType queryType, Class<V> clazz,
+			Set<FilterParameter> filters, OrderParameter order) {
+		if (!this.isQueryCacheEnabled()) {
+			return this.applyQueryHints(em.createQuery(this.buildCriteriaQuery(em, queryType, clazz, filters, order)));
+		}
 
-		CriteriaQuery<Long> createCount = this.buildCriteriaQuery(em, QueryType.COUNT, Long.class, filters, order);
-		Long count = em.createQuery(createCount).getSingleResult();
+		final List<FilterParameter> sortedFilters = QueryShape.sort(filters);
+		final QueryShape shape = new QueryShape(queryType, clazz, sortedFilters, order, this.getInListChunkSize());
+		final Map<String, Object> bindings = new HashMap<>();
+		for (int i = 0; i < sortedFilters.size(); i++) {
+			bindings.putAll(
+					QueryManager.getParameterBindings(sortedFilters.get(i), i, this.getInListChunkSize()));
+		}
 
-		CriteriaQuery<T> query = this.buildCriteriaQuery(em, QueryType.ENTITIES, this.resourceClass, filters, order);
-		final TypedQuery<T> typedQuery = em.createQuery(query);
-		final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
-		List<T> results = typedQuery.setFirstResult(first).setMaxResults(page.getSize()).getResultList();
+		final BoundedCache<QueryShape, String> compiledQueries = this.getCompiledQueries();
+		TypedQuery<V> query;
+		final String jpql = compiledQueries.getIfPresent(shape);
+		if (jpql != null) {
+			query = em.createQuery(jpql, clazz);
+		} else {
+			query = em.createQuery(
+					this.buildParameterizedCriteriaQuery(em, queryType, clazz, sortedFilters, order));
+			final String rendered = query.unwrap(org.hibernate.query.Query.class).getQueryString();
+			// the parameters of the values of the criteria (es: literals) are bound by the criteria query only
+			if (query.getParameters().stream().allMatch(p -> bindings.containsKey(p.getName()))) {
+				compiledQueries.put(shape, rendered);
+			} else {
+				this.logger().debug("Query {} has implicit parameters and can't be cached", rendered);
+			}
+		}
 
-		return new PaginatedData<>(results, page.getPageNumber(), page.getSize(), count.intValue());
+		for (Map.Entry<String, Object> binding : bindings.entrySet()) {
+			if (binding.getValue() instanceof Collection) {
+				// the parameters of the criteria query are typed as the elements of the IN lists
+				query.unwrap(org.hibernate.query.Query.class).setParameterList(binding.getKey(),
+						(Collection<?>) binding.getValue());
+			} else {
+				query.setParameter(binding.getKey(), binding.getValue());
+			}
+		}
+		return this.applyQueryHints(query);
 	}
 
 	/**
-	 * Return a list of entities of specified type sorted by info contained in OrderParameter and filtered by
-	 * a list of FilterParameter.  All filters are combined in AND.
+	 * Delete the entity instance, managed by em or detached (es: a snapshot returned by findSnapshot)
+	 *
+	 * @param em
+	 * @param entity
+	 */
+	public void delete(EntityManager em, T entity) {
+		em.remove(em.contains(entity) ? entity : em.getReference(Hibernate.getClass(entity), entity.getId()));
+		this.invalidateEntityCache(em, entity.getId());
+	}
+
+	/**
+	 * Delete all the entity instances in batches of getBatchSize(): the persistence context is flushed and cleared
+	 * after each batch, so entities managed by em before the call are detached too. Entities without id are
+	 * ignored.
+	 *
+	 * @param em
+	 * @param entities
+	 * @return the number of entities deleted by each batch
+	 */
+	public BatchResult deleteAll(EntityManager em, Collection<T> entities) {
+		final List<T> deleted = new ArrayList<>(entities.size());
+		for (T entity : entities) {
+			if (entity.getId() != null) {
+				deleted.add(entity);
+			}
+		}
+		// entities of the same class are deleted next to each other, so that JDBC batches are not interrupted
+		deleted.sort(Comparator.comparing(e -> Hibernate.getClass(e).getName()));
+		this.invalidateEntityCache(em, deleted);
+
+		return this.writeInBatches(em, deleted, entity -> {
+			if (em.contains(entity)) {
+				em.remove(entity);
+			} else {
+				em.remove(em.getReference(Hibernate.getClass(entity), entity.getId()));
+			}
+		});
+	}
+
+	/**
+	 * Delete with a single statement all the entities of specified type filtered by a list of FilterParameter. All
+	 * filters are combined in AND, an empty set deletes all the entities.<br>
+	 * The statement bypasses the persistence context: entities already loaded by em are not removed from it and
+	 * cascades and entity listeners are not applied.
 	 *
 	 * @param em
 	 * @param filters
-	 * @param order
-	 * @return
+	 * @return the number of deleted entities
 	 */
-	public List<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order) {
-		CriteriaQuery<T> query = this.buildCriteriaQuery(em, QueryType.ENTITIES, this.resourceClass, filters, order);
-		final TypedQuery<T> typedQuery = em.createQuery(query);
-		return typedQuery.getResultList();
+	public int deleteWhere(EntityManager em, Set<FilterParameter> filters) {
+		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+		CriteriaDelete<T> delete = criteriaBuilder.createCriteriaDelete(this.resourceClass);
+		Root<T> root = delete.from(this.resourceClass);
+
+		delete.where(this.buildBulkPredicates(criteriaBuilder, delete, root, filters));
+		this.invalidateEntityCache(em);
+		return em.createQuery(delete).executeUpdate();
 	}
 
-	protected T update(EntityManager em, T entity) {
-		T updated = em.merge(entity);
-		em.flush();
-		return updated;
+	/**
+	 * Return the row estimate of the entity table kept by the database planner statistics
+	 * (PostgreSQL pg_class.reltuples, H2 INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE).
+	 *
+	 * @param em
+	 * @return the estimate, empty if the database is not supported or its statistics are not available
+	 */
+	protected Optional<Long> estimateCountAll(EntityManager em) {
+		SessionFactoryImplementor sessionFactory = em.unwrap(SessionImplementor.class).getFactory();
+		EntityPersister persister = sessionFactory.getMetamodel().entityPersister(this.resourceClass);
+		if (!(persister instanceof AbstractEntityPersister)) {
+			return Optional.empty();
+		}
+
+		String tableName = ((AbstractEntityPersister) persister).getTableName();
+		String schemaName = null;
+		int lastIndexOfDot = tableName.lastIndexOf(".");
+		if (lastIndexOfDot > -1) {
+			schemaName = tableName.substring(0, lastIndexOfDot);
+			tableName = tableName.substring(lastIndexOfDot + 1);
+		}
+
+		final Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+		final String sql;
+		final boolean upperCase;
+		if (dialect instanceof PostgreSQL81Dialect) {
+			sql = "SELECT c.reltuples FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+					+ "WHERE c.relname = :table AND n.nspname = " + (schemaName != null ? ":schema" : "current_schema()");
+			upperCase = false;
+		} else if (dialect instanceof H2Dialect) {
+			sql = "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = :table AND TABLE_SCHEMA = "
+					+ (schemaName != null ? ":schema" : "SCHEMA()");
+			upperCase = true;
+		} else {
+			return Optional.empty();
+		}
+
+		javax.persistence.Query query = em.createNativeQuery(sql)
+				.setParameter("table", this.normalizeIdentifier(tableName, upperCase));
+		if (schemaName != null) {
+			query.setParameter("schema", this.normalizeIdentifier(schemaName, upperCase));
+		}
+
+		List<?> results = query.setMaxResults(1).getResultList();
+		if (results.isEmpty() || results.get(0) == null) {
+			return Optional.empty();
+		}
+		long estimate = ((Number) results.get(0)).longValue();
+		// PostgreSQL reports -1 (or 0 before 14) for tables never analyzed
+		return estimate > 0 ? Optional.of(estimate) : Optional.empty();
+	}
+
+	/**
+	 * Return the entities of specified type with the given ids, loaded with a single IN query, in the same order of
+	 * the ids. Missing ids are skipped.
+	 *
+	 * @param em
+	 * @param ids
+	 * @param fetchPlan: the associations to be loaded with the entities, can be NULL
+	 * @return
+	 */
+	protected List<T> fetchByIds(EntityManager em, List<?> ids, FetchPlan fetchPlan) {
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		final Map<String, Object> hints = this.buildFetchHints(em, fetchPlan);
+		// collection fetches repeat the root rows
+		final String jpql = (hints.isEmpty() ? "FROM " : "SELECT DISTINCT en FROM ") + this.resourceClass.getName()
+				+ " en WHERE en.id IN(:ids)";
+
+		final List<Object> normalizedIds = this.normalizeIds(em, ids);
+		final Map<Object, T> entities = new HashMap<>();
+		for (List<?> chunk : InListUtils.partition(normalizedIds, this.getInListChunkSize())) {
+			final TypedQuery<T> typedQuery = em.createQuery(jpql, this.resourceClass).setParameter("ids", chunk);
+			hints.forEach(typedQuery::setHint);
+			for (T entity : this.applyQueryHints(typedQuery).getResultList()) {
+				entities.put(entity.getId(), entity);
+			}
+		}
+
+		final List<T> results = new ArrayList<>(ids.size());
+		for (Object id : normalizedIds) {
+			T entity = entities.get(id);
+			if (entity != null) {
+				results.add(entity);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Find by primary keys.<br>
+	 * Return the entities of the specified type with the given ids, in the same order of the ids, skipping missing
+	 * ones. See findAll(em, ids, skipMissing).
+	 *
+	 * @param em
+	 * @param ids: primary keys (@Id) of the entity instances
+	 * @return
+	 */
+	public <K extends Serializable> List<T> findAll(EntityManager em, List<K> ids) {
+		return this.findAll(em, ids, true);
+	}
+
+	/**
+	 * Find by primary keys.<br>
+	 * Return the entities of the specified type with the given ids, in the same order of the ids. Entities already
+	 * managed by em or kept by the second-level cache are not loaded again, the others are loaded with IN queries of
+	 * at most getInListChunkSize() ids.
+	 *
+	 * @param em
+	 * @param ids:         primary keys (@Id) of the entity instances, converted to the type of the @Id attribute (es:
+	 *                     Integer to Long)
+	 * @param skipMissing: TRUE to skip missing ids, FALSE to return NULL in their place
+	 * @return
+	 */
+	public <K extends Serializable> List<T> findAll(EntityManager em, List<K> ids, boolean skipMissing) {
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		final List<Object> normalizedIds = this.normalizeIds(em, ids);
+		@SuppressWarnings("unchecked")
+		final List<Serializable> loadedIds = (List<Serializable>) (List<?>) normalizedIds;
+		final List<T> loaded = em.unwrap(Session.class).byMultipleIds(this.resourceClass)
+				.with(this.getCachePolicy().getCacheMode()).withBatchSize(this.getInListChunkSize())
+				.enableSessionCheck(true).multiLoad(loadedIds);
+
+		// entities found in the session are returned before the loaded ones
+		final Map<Object, T> entities = new HashMap<>();
+		for (T entity : loaded) {
+			if (entity != null) {
+				entities.put(entity.getId(), entity);
+			}
+		}
+		final List<T> results = new ArrayList<>(ids.size());
+		for (Object id : normalizedIds) {
+			T entity = entities.get(id);
+			if (entity != null || !skipMissing) {
+				results.add(entity);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Find by primary key.<br>
+	 * Return an Optional containing (or not) an entity of the specified type
+	 *
+	 * @param em
+	 * @param id: primary key (@Id) of the entity instance
+	 * @return an Optional of nullable
+	 */
+	public Optional<T> find(EntityManager em, Object id) {
+		return this.find(em, id, null);
+	}
+
+	/**
+	 * Find by primary key.<br>
+	 * Return an Optional containing (or not) an entity of the specified type, loaded with the associations of the
+	 * FetchPlan
+	 *
+	 * @param em
+	 * @param id:        primary key (@Id) of the entity instance
+	 * @param fetchPlan: the associations to be loaded with the entity, can be NULL
+	 * @return an Optional of nullable
+	 */
+	public Optional<T> find(EntityManager em, Object id, FetchPlan fetchPlan) {
+		return this.measure(em, QueryMetrics.Operation.FIND, null, () -> {
+			final Map<String, Object> hints = this.buildFetchHints(em, fetchPlan);
+			hints.put("javax.persistence.cache.retrieveMode", this.getCachePolicy().getRetrieveMode());
+			hints.put("javax.persistence.cache.storeMode", this.getCachePolicy().getStoreMode());
+			return Optional.ofNullable(em.find(this.resourceClass, id, hints));
+		});
+	}
+
+	/**
+	 * Find by primary key a read-only snapshot of the entity: a detached copy (see copyCachedEntity(...)) that em
+	 * doesn't manage, whose changes are never written and whose lazy associations can't be loaded. Every call
+	 * returns a new copy.<br>
+	 * When the entity cache is enabled (see getEntityCacheSize()) snapshots are read from it, without touching the
+	 * database; entities missing from the cache are loaded by em and copied in the cache. Entities already managed
+	 * by em are copied as they are, with their pending changes, and are not cached.
+	 *
+	 * @param em
+	 * @param id: primary key (@Id) of the entity instance
+	 * @return an Optional of nullable
+	 */
+	public Optional<T> findSnapshot(EntityManager em, Object id) {
+		final BoundedCache<Object, T> cache = this.getEntityCache();
+		// the cache is invalidated by the ids of the entities, of the type of the @Id attribute
+		final Object key = this.normalizeIds(em, Collections.singletonList(id)).get(0);
+		if (cache == null || this.isManaged(em, key)) {
+			return this.find(em, key, null).map(this::copyCachedEntity);
+		}
+		final T cached = cache.get(key, k -> this.find(em, k, null).map(this::copyCachedEntity).orElse(null));
+		return Optional.ofNullable(cached).map(this::copyCachedEntity);
+	}
+
+	/**
+	 * Flush em before a Stream that clears it, so that its pending changes are not lost
+	 *
+	 * @param em
+	 */
+	private void flushBeforeStream(EntityManager em) {
+		if (em.isJoinedToTransaction()) {
+			em.flush();
+		}
+	}
+
+	/**
+	 * Find by primary key.<br>
+	 * Return an entity of the specified type
+	 *
+	 * @param em
+	 * @param id: primary key (@Id) of the entity instance
+	 * @return an Optional of nullable
+	 * @throws HttpException (NOT_FOUND) if not present
+	 */
+	public T get(EntityManager em, Object id) {
+		return this.find(em, id)
+				.orElseThrow(() -> new HttpException(String.format("%s #%s not found", this.resourceClass, id),
+						HttpException.Status.NOT_FOUND));
+	}
+
+	/**
+	 * Return a copy of the entity that shares no mutable state with it: the entity cache keeps a copy of the loaded
+	 * entities and findSnapshot returns a new copy of it to every call. By default entities are copied with Java
+	 * serialization, so they (and their initialized associations) must be Serializable; override to copy them in
+	 * other ways.
+	 *
+	 * @param entity
+	 * @return
+	 * @throws UnsupportedOperationException if the entity is not Serializable
+	 */
+	@SuppressWarnings("unchecked")
+	protected T copyCachedEntity(T entity) {
+		if (!(entity instanceof Serializable)) {
+			throw new UnsupportedOperationException(String.format(
+					"%s must be Serializable to be kept in the entity cache, or %s must override copyCachedEntity",
+					entity.getClass().getName(), this.getClass().getName()));
+		}
+		return (T) SerializationHelper.clone((Serializable) entity);
+	}
+
+	/**
+	 * Return the entity cache, creating it the first time if getEntityCacheSize() is positive
+	 *
+	 * @return the cache, NULL if it's disabled
+	 * @throws IllegalStateException if the entities are not Serializable and copyCachedEntity is not overridden
+	 */
+	private BoundedCache<Object, T> getEntityCache() {
+		if (this.entityCache == null && this.getEntityCacheSize() > 0) {
+			synchronized (this) {
+				if (this.entityCache == null) {
+					if (!Serializable.class.isAssignableFrom(this.resourceClass) && !this.overridesCopyCachedEntity()) {
+						throw new IllegalStateException(String.format(
+								"%s must be Serializable to be kept in the entity cache, or %s must override "
+										+ "copyCachedEntity",
+								this.resourceClass.getName(), this.getClass().getName()));
+					}
+					this.entityCache = new BoundedCache<>(this.getEntityCacheSize(), this.getEntityCacheTtl());
+				}
+			}
+		}
+		return this.entityCache;
+	}
+
+	/**
+	 * Return the maximum number of entities kept by the in-process entity cache used by findSnapshot, override to
+	 * enable it. By default it is 0: the cache is disabled.
+	 *
+	 * @return
+	 */
+	protected int getEntityCacheSize() {
+		return 0;
+	}
+
+	/**
+	 * Return how long an entity is kept by the in-process entity cache after it is loaded, override to change it
+	 *
+	 * @return
+	 */
+	protected Duration getEntityCacheTtl() {
+		return Duration.ofMinutes(5);
+	}
+
+	/**
+	 * Return the number of entities written between two flushes by saveAll and deleteAll, override to change it.
+	 * By default it is hibernate.jdbc.batch_size, or 50 if JDBC batching is not configured.
+	 *
+	 * @param em
+	 * @return
+	 */
+	protected int getBatchSize(EntityManager em) {
+		int jdbcBatchSize = em.unwrap(SessionImplementor.class).getFactory().getSessionFactoryOptions()
+				.getJdbcBatchSize();
+		return jdbcBatchSize > 1 ? jdbcBatchSize : 50;
+	}
+
+	/**
+	 * Return the cache policy of the DAO's queries and of find, override to change it. By default nothing is cached
+	 * by the queries.
+	 *
+	 * @return
+	 */
+	protected CachePolicy getCachePolicy() {
+		return CachePolicy.NONE;
+	}
+
+	/**
+	 * Return the hit, miss and put counts of the second-level cache region of the entity and of the query cache
+	 * region of the DAO. Counts are zero if the regions don't exist or statistics are disabled.
+	 *
+	 * @param em
+	 * @return
+	 */
+	public CacheStatistics getCacheStatistics(EntityManager em) {
+		final SessionFactoryImplementor sessionFactory = em.unwrap(SessionImplementor.class).getFactory();
+		final Statistics statistics = sessionFactory.getStatistics();
+
+		SecondLevelCacheStatistics entityStatistics = null;
+		EntityPersister persister = sessionFactory.getMetamodel().entityPersister(this.resourceClass);
+		if (persister.hasCache()) {
+			entityStatistics = statistics
+					.getSecondLevelCacheStatistics(persister.getCacheAccessStrategy().getRegion().getName());
+		}
+
+		SecondLevelCacheStatistics queryStatistics = null;
+		if (sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+			String queryRegion = this.getQueryCacheRegion();
+			String prefix = sessionFactory.getSessionFactoryOptions().getCacheRegionPrefix();
+			if (prefix != null) {
+				queryRegion = prefix + "." + queryRegion;
+			}
+			queryStatistics = statistics.getSecondLevelCacheStatistics(queryRegion);
+		}
+
+		return new CacheStatistics(entityStatistics != null ? entityStatistics.getHitCount() : 0,
+				entityStatistics != null ? entityStatistics.getMissCount() : 0,
+				entityStatistics != null ? entityStatistics.getPutCount() : 0,
+				queryStatistics != null ? queryStatistics.getHitCount() : 0,
+				queryStatistics != null ? queryStatistics.getMissCount() : 0,
+				queryStatistics != null ? queryStatistics.getPutCount() : 0);
+	}
+
+	/**
+	 * Return the maximum number of rows counted by CountStrategy.CAPPED, override to change it
+	 *
+	 * @return
+	 */
+	protected int getCountCap() {
+		return 1000;
+	}
+
+	/**
+	 * Return the executor that runs the count of the paginated searches in parallel with the page query, override
+	 * to enable it. By default it is NULL: the count runs on the caller's EntityManager before the page query.<br>
+	 * It must be a dedicated executor, not the JPAExecutor: the searches usually run on the threads of the
+	 * JPAExecutor, sized on the connection pool, and they would wait for counts queued behind themselves. Its
+	 * threads plus the JPAExecutor's must not exceed the connections of the pool.
+	 *
+	 * @return
+	 */
+	protected Executor getCountExecutor() {
+		return null;
+	}
+
+	/**
+	 * Return the RevisionJPAApi that runs the parallel counts, override to return the injected one. The count then
+	 * runs in RevisionJPAApi.withReadOnlyTransaction: on a read replica (or on the primary unit inside a
+	 * read-your-writes scope that has written) and measured by the TransactionMonitor. By default it is NULL: the
+	 * count runs in a read-only transaction of a new EntityManager of the caller's EntityManagerFactory.
+	 *
+	 * @return
+	 */
+	protected RevisionJPAApi getRevisionJPAApi() {
+		return null;
+	}
+
+	/**
+	 * Return how long the paginated searches wait for a parallel count after the page has been loaded, override to
+	 * change it. When it expires the total is reported as UNKNOWN.
+	 *
+	 * @return
+	 */
+	protected Duration getCountTimeout() {
+		return Duration.ofSeconds(5);
+	}
+
+	/**
+	 * Return the maximum number of values bound to a single IN list, larger collections are split in more lists
+	 * (see InListUtils). Override to change it
+	 *
+	 * @return
+	 */
+	protected int getInListChunkSize() {
+		return InListUtils.DEFAULT_CHUNK_SIZE;
+	}
+
+	/**
+	 * Return the maximum number of parameters bound by the filters of a query, override to change it according to
+	 * the database's limit. Filters binding more are rejected, and getIfNotInIdSet excludes larger id sets in memory
+	 * when it can't use a temporary table.
+	 *
+	 * @return
+	 */
+	protected int getMaxParameters() {
+		return InListUtils.DEFAULT_MAX_PARAMETERS;
+	}
+
+	/**
+	 * Return the maximum number of query shapes cached when isQueryCacheEnabled(), override to change it
+	 *
+	 * @return
+	 */
+	protected int getQueryCacheSize() {
+		return 256;
+	}
+
+	/**
+	 * Return the number of query shapes whose JPQL is cached when isQueryCacheEnabled()
+	 *
+	 * @return
+	 */
+	public int getCompiledQueryCount() {
+		return this.compiledQueries != null ? this.compiledQueries.size() : 0;
+	}
+
+	/**
+	 * Return the cache of the JPQL of the query shapes, creating it the first time: the least recently used shapes
+	 * are evicted when it's full
+	 *
+	 * @return
+	 */
+	private BoundedCache<QueryShape, String> getCompiledQueries() {
+		if (this.compiledQueries == null) {
+			synchronized (this) {
+				if (this.compiledQueries == null) {
+					this.compiledQueries = new BoundedCache<>(this.getQueryCacheSize());
+				}
+			}
+		}
+		return this.compiledQueries;
+	}
+
+	/**
+	 * Return the Hibernate query cache region of the DAO: the region of its CachePolicy, or the entity class name
+	 * followed by ".queries"
+	 *
+	 * @return
+	 */
+	protected String getQueryCacheRegion() {
+		final String region = this.getCachePolicy().getQueryRegion();
+		return region != null ? region : this.resourceClass.getName() + ".queries";
+	}
+
+	/**
+	 * Return where the DAO reports latency, rows and JDBC statements of its operations, override to enable it (es:
+	 * returning a DefaultQueryMetrics shared by the DAOs). By default it is QueryMetrics.NONE: nothing is measured.
+	 *
+	 * @return
+	 */
+	protected QueryMetrics getQueryMetrics() {
+		return QueryMetrics.NONE;
+	}
+
+	/**
+	 * Return the CountStrategy used by paginated methods of this DAO, override to change it
+	 *
+	 * @return
+	 */
+	protected CountStrategy getCountStrategy() {
+		return CountStrategy.EXACT;
+	}
+
+	/**
+	 * Return the number of streamed entities after which the EntityManager is cleared, override to change it
+	 *
+	 * @return
+	 */
+	protected int getStreamDetachInterval() {
+		return this.getStreamFetchSize();
+	}
+
+	/**
+	 * Return the JDBC fetch size of streamed queries, override to change it
+	 *
+	 * @return
+	 */
+	protected int getStreamFetchSize() {
+		return 500;
+	}
+
+	/**
+	 * Return the size of the id sets that getIfNotInIdSet excludes through a temporary table instead of NOT IN
+	 * lists, override to change it
+	 *
+	 * @return
+	 */
+	protected int getIdTableThreshold() {
+		return 10 * this.getInListChunkSize();
+	}
+
+	/**
+	 * Remove all the entities from the in-process entity cache, now and again when the transaction of em completes
+	 *
+	 * @param em
+	 */
+	protected void invalidateEntityCache(EntityManager em) {
+		final BoundedCache<Object, T> cache = this.entityCache;
+		if (cache != null) {
+			cache.invalidateAll();
+			this.afterCompletion(em, cache::invalidateAll);
+		}
+	}
+
+	/**
+	 * Remove some entities from the in-process entity cache, now and again when the transaction of em completes
+	 *
+	 * @param em
+	 * @param entities
+	 */
+	private void invalidateEntityCache(EntityManager em, Collection<T> entities) {
+		final BoundedCache<Object, T> cache = this.entityCache;
+		if (cache != null && !entities.isEmpty()) {
+			final List<Object> ids = new ArrayList<>(entities.size());
+			for (T entity : entities) {
+				ids.add(entity.getId());
+				cache.invalidate(entity.getId());
+			}
+			this.afterCompletion(em, () -> ids.forEach(cache::invalidate));
+		}
+	}
+
+	/**
+	 * Remove an entity from the in-process entity cache, now and again when the transaction of em completes, so
+	 * that loads made by other transactions before the commit don't stay cached: save, update and delete call it,
+	 * DAOs that change entities in other ways should call it too
+	 *
+	 * @param em
+	 * @param id
+	 */
+	protected void invalidateEntityCache(EntityManager em, Object id) {
+		final BoundedCache<Object, T> cache = this.entityCache;
+		if (cache != null && id != null) {
+			cache.invalidate(id);
+			this.afterCompletion(em, () -> cache.invalidate(id));
+		}
+	}
+
+	/**
+	 * Return TRUE to load the pages of search(em, filters, order, page) with searchIdsFirst(...), override to
+	 * enable it
+	 *
+	 * @return
+	 */
+	protected boolean isIdsFirstSearch() {
+		return false;
+	}
+
+	/**
+	 * Return TRUE if excluding the ids with NOT IN lists would bind more than getMaxParameters() parameters
+	 *
+	 * @param ids
+	 * @return
+	 */
+	private boolean isOverParameterLimit(Set<? extends Object> ids) {
+		return InListUtils.parameterCount(ids.size(), this.getInListChunkSize()) > this.getMaxParameters();
+	}
+
+	/**
+	 * Return TRUE if the entity (or a proxy of it) is in the persistence context of em
+	 *
+	 * @param em
+	 * @param id
+	 * @return
+	 */
+	private boolean isManaged(EntityManager em, Object id) {
+		final SessionImplementor session = em.unwrap(SessionImplementor.class);
+		final EntityPersister persister = session.getFactory().getMetamodel().entityPersister(this.resourceClass);
+		final PersistenceContext persistenceContext = session.getPersistenceContext();
+		final EntityKey key = session.generateEntityKey((Serializable) id, persister);
+		return persistenceContext.getEntity(key) != null || persistenceContext.getProxy(key) != null;
+	}
+
+	/**
+	 * Return TRUE if the future has failed because an executor rejected its task
+	 *
+	 * @param future
+	 * @return
+	 */
+	private boolean isRejected(CompletableFuture<?> future) {
+		if (!future.isCompletedExceptionally()) {
+			return false;
+		}
+		try {
+			future.join();
+			return false;
+		} catch (CompletionException e) {
+			return e.getCause() instanceof RejectedExecutionException;
+		}
+	}
+
+	/**
+	 * Return TRUE to cache the JPQL of search queries by QueryShape (see createQuery(...)), override to enable it.
+	 * <br>
+	 * Searches then skip the CriteriaQuery building and Hibernate finds the query plan by its JPQL. DAOs that
+	 * override buildCriteriaQuery(...) should not enable it, cached queries are built by
+	 * buildParameterizedCriteriaQuery(...).
+	 *
+	 * @return
+	 */
+	protected boolean isQueryCacheEnabled() {
+		return false;
+	}
+
+	/**
+	 * Return all entities of specified type
+	 *
+	 * @param em
+	 * @return
+	 */
+	public List<T> getAll(EntityManager em) {
+		return this.measure(em, QueryMetrics.Operation.GET_ALL, null, () -> this
+				.applyQueryHints(em.createQuery("from " + this.resourceClass.getName(), this.resourceClass))
+				.getResultList());
+	}
+
+	/**
+	 * Return a single page of all entities of specified type
+	 *
+	 * @param em
+	 * @param page: PageParameter instance with info about page number, page size
+	 *              and sorting
+	 * @return an instance of PaginatedData
+	 */
+	public PaginatedData<T> getAll(EntityManager em, PageParameter page) {
+		return this.getAll(em, null, page);
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained
+	 * in OrderParameter
+	 *
+	 * @param em
+	 * @param page:  contain pagination info
+	 * @param order: contains sorting info
+	 * @return an instance of PaginatedData
+	 */
+	public PaginatedData<T> getAll(EntityManager em, OrderParameter order, PageParameter page) {
+		return this.measure(em, QueryMetrics.Operation.GET_ALL, null, () -> {
+			final CountResult count;
+			if (this.getCountStrategy().equals(CountStrategy.EXACT)) {
+				count = new CountResult(this.countAll(em), PaginatedData.TotalType.EXACT, CountStrategy.EXACT);
+			} else {
+				count = this.count(em, new HashSet<>(), this.getCountStrategy());
+			}
+			final List<Predicate> predicates = new ArrayList<>();
+			CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+
+			CriteriaQuery<T> query = criteriaBuilder.createQuery(this.resourceClass);
+			Root<T> rootItemDefinition = query.from(this.resourceClass);
+			query.select(rootItemDefinition).where(predicates.toArray(new Predicate[predicates.size()]));
+
+			this.handleOrderParameter(criteriaBuilder, query, rootItemDefinition, order);
+
+			final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
+			List<T> elements = this.applyQueryHints(em.createQuery(query)).setFirstResult(first)
+					.setMaxResults(page.getSize()).getResultList();
+
+			return new PaginatedData<>(elements, page.getPageNumber(), page.getSize(), count.getIntTotal(),
+					count.getTotalType(), count.getStrategy());
+		});
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter, loaded with
+	 * the associations of the FetchPlan. The ids of the page are selected first, so that fetching collections
+	 * doesn't paginate in memory (see searchIdsFirst).
+	 *
+	 * @param em
+	 * @param order:     contains sorting info
+	 * @param page:      contain pagination info
+	 * @param fetchPlan: the associations to be loaded with the entities, can be NULL
+	 * @return an instance of PaginatedData
+	 */
+	public PaginatedData<T> getAll(EntityManager em, OrderParameter order, PageParameter page, FetchPlan fetchPlan) {
+		return this.searchIdsFirst(em, new HashSet<>(), order, page, fetchPlan);
+	}
+
+	/**
+	 * Return the ids of all entities of specified type that are not in the ids set, sorted, loaded without binding
+	 * the ids: the set is excluded in memory
+	 *
+	 * @param em
+	 * @param ids
+	 * @return
+	 */
+	private List<Object> getIdsNotIn(EntityManager em, Set<? extends Object> ids) {
+		final List<Object> allIds = this.applyQueryHints(em.createQuery(
+				"SELECT en.id FROM " + this.resourceClass.getName() + " en ORDER BY en.id", Object.class))
+				.getResultList();
+		allIds.removeAll(new HashSet<>(this.normalizeIds(em, ids)));
+		return allIds;
+	}
+
+	/**
+	 * Return all entities of specified type that have their id in the ids set
+	 *
+	 * @param em
+	 * @param ids
+	 * @return
+	 */
+	public List<T> getIfInIdSet(EntityManager em, Set<? extends Object> ids) {
+		return this.measure(em, QueryMetrics.Operation.GET_IF_IN_ID_SET, null, () -> {
+			final List<T> results = new ArrayList<>();
+			for (List<?> chunk : InListUtils.partition(ids, this.getInListChunkSize())) {
+				results.addAll(this.applyQueryHints(em.createQuery(
+						"FROM " + this.resourceClass.getName() + " en WHERE en.id IN(:ids)", this.resourceClass))
+						.setParameter("ids", chunk).getResultList());
+			}
+			return results;
+		});
+	}
+
+	/**
+	 * Return all entities of specified type that have their id in the ids set, loaded with the associations of the
+	 * FetchPlan
+	 *
+	 * @param em
+	 * @param ids
+	 * @param fetchPlan: the associations to be loaded with the entities, can be NULL
+	 * @return
+	 */
+	public List<T> getIfInIdSet(EntityManager em, Set<? extends Object> ids, FetchPlan fetchPlan) {
+		return this.measure(em, QueryMetrics.Operation.GET_IF_IN_ID_SET, null,
+				() -> this.fetchByIds(em, new ArrayList<>(ids), fetchPlan));
+	}
+
+	/**
+	 * Return all entities of specified type that don't have their id in the ids set.<br>
+	 * Sets of at least getIdTableThreshold() ids are loaded in a temporary table and excluded with an anti-join,
+	 * when the database supports it and em is in a read-write transaction (see TemporaryIdTable).
+	 * Otherwise sets that would bind more than getMaxParameters() parameters are excluded in memory from the ids of
+	 * all the entities.
+	 *
+	 * @param em
+	 * @param ids
+	 * @return
+	 */
+	public List<T> getIfNotInIdSet(EntityManager em, Set<? extends Object> ids) {
+		return this.measure(em, QueryMetrics.Operation.GET_IF_NOT_IN_ID_SET, null, () -> {
+			if (this.useIdTable(em, ids)) {
+				try (TemporaryIdTable idTable = this.createIdTable(em, ids)) {
+					return this.fetchByIds(em, this.createIdTableQuery(em, idTable, false).getResultList(), null);
+				}
+			} else if (this.isOverParameterLimit(ids)) {
+				return this.fetchByIds(em, this.getIdsNotIn(em, ids), null);
+			} else if (!ids.isEmpty()) {
+				final List<? extends List<?>> chunks = InListUtils.partition(ids, this.getInListChunkSize());
+				final StringBuilder jpql = new StringBuilder("FROM " + this.resourceClass.getName() + " en WHERE ");
+				for (int i = 0; i < chunks.size(); i++) {
+					jpql.append(i > 0 ? " AND " : "").append("en.id NOT IN(:ids").append(i).append(")");
+				}
+				final TypedQuery<T> query = em.createQuery(jpql.toString(), this.resourceClass);
+				for (int i = 0; i < chunks.size(); i++) {
+					query.setParameter("ids" + i, chunks.get(i));
+				}
+				return this.applyQueryHints(query).getResultList();
+			} else {
+				return this.getAll(em);
+			}
+		});
+	}
+
+	/**
+	 * Return a single page of the entities of specified type that don't have their id in the ids set, sorted by
+	 * id.<br>
+	 * Sets of at least getIdTableThreshold() ids are loaded in a temporary table and excluded with an anti-join,
+	 * when the database supports it and em is in a read-write transaction (see TemporaryIdTable).
+	 * Otherwise sets that would bind more than getMaxParameters() parameters are excluded in memory from the ids of
+	 * all the entities.
+	 *
+	 * @param em
+	 * @param ids
+	 * @param page
+	 * @return an instance of PaginatedData
+	 */
+	public PaginatedData<T> getIfNotInIdSet(EntityManager em, Set<? extends Object> ids, PageParameter page) {
+		return this.measure(em, QueryMetrics.Operation.GET_IF_NOT_IN_ID_SET, null, () -> {
+			final OrderParameter order = new OrderParameter("id", OrderParameter.OrderType.ASC);
+			if (!this.useIdTable(em, ids) && this.isOverParameterLimit(ids)) {
+				final List<Object> remainingIds = this.getIdsNotIn(em, ids);
+				final int first = Math.min(this.calculateFirstResult(page.getPageNumber(), page.getSize()),
+						remainingIds.size());
+				final List<Object> pageIds = remainingIds.subList(first,
+						Math.min(first + page.getSize(), remainingIds.size()));
+				return new PaginatedData<>(this.fetchByIds(em, pageIds, null), page.getPageNumber(), page.getSize(),
+						remainingIds.size(), PaginatedData.TotalType.EXACT, CountStrategy.EXACT);
+			}
+			if (!this.useIdTable(em, ids)) {
+				return this.search(em, this.buildNotInIdSetFilters(ids), order, page);
+			}
+
+			try (TemporaryIdTable idTable = this.createIdTable(em, ids)) {
+				final CountResult count = new CountResult(
+						((Number) this.createIdTableQuery(em, idTable, true).getSingleResult()).longValue(),
+						PaginatedData.TotalType.EXACT, CountStrategy.EXACT);
+				final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
+				List<Object> pageIds = this.createIdTableQuery(em, idTable, false).setFirstResult(first)
+						.setMaxResults(page.getSize()).getResultList();
+				return new PaginatedData<>(this.fetchByIds(em, pageIds, null), page.getPageNumber(), page.getSize(),
+						count.getIntTotal(), count.getTotalType(), count.getStrategy());
+			}
+		});
+	}
+
+	@Deprecated
+	protected void handleOrderParameter(CriteriaBuilder criteriaBuilder, CriteriaQuery<T> query, Root<T> rootElement,
+			OrderParameter order) {
+		if (order != null) {
+			if (order.getOrderType().equals(OrderParameter.OrderType.ASC)) {
+				query.orderBy(criteriaBuilder.asc(rootElement.get(order.getOrderField())));
+			} else if (order.getOrderType().equals(OrderParameter.OrderType.DESC)) {
+				query.orderBy(criteriaBuilder.desc(rootElement.get(order.getOrderField())));
+			}
+		}
+	}
+
+	private Set<FilterParameter> buildNotInIdSetFilters(Set<? extends Object> ids) {
+		final Set<FilterParameter> filters = new HashSet<>();
+		if (!ids.isEmpty()) {
+			filters.add(new CollectionAttributeFilter<>("id", FilterOperator.NOT_IN, new ArrayList<>(ids)));
+		}
+		return filters;
+	}
+
+	private TemporaryIdTable createIdTable(EntityManager em, Set<? extends Object> ids) {
+		final SessionFactoryImplementor sessionFactory = em.unwrap(SessionImplementor.class).getFactory();
+		final AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory.getMetamodel()
+				.entityPersister(this.resourceClass);
+		final int sqlType = persister.getIdentifierType().sqlTypes(sessionFactory)[0];
+		final String columnType = sessionFactory.getJdbcServices().getDialect().getTypeName(sqlType,
+				Column.DEFAULT_LENGTH, Column.DEFAULT_PRECISION, Column.DEFAULT_SCALE);
+		return TemporaryIdTable.create(em, columnType, ids);
+	}
+
+	/**
+	 * Run the operation and report it to getQueryMetrics(), with the statements executed meanwhile by the session of
+	 * em. Failed operations are not reported, and neither are the operations run by another measured operation of
+	 * the same session (es: the countAll of getAll), that are part of its measure.
+	 *
+	 * @param em
+	 * @param operation
+	 * @param filters:   can be NULL
+	 * @param call
+	 * @return the result of the call
+	 */
+	private <R> R measure(EntityManager em, QueryMetrics.Operation operation, Set<FilterParameter> filters,
+			Supplier<R> call) {
+		final QueryMetrics metrics = this.getQueryMetrics();
+		if (metrics == QueryMetrics.NONE) {
+			return call.get();
+		}
+		final StatementCounter counter = StatementCounter.of(em);
+		if (!counter.enter()) {
+			try {
+				return call.get();
+			} finally {
+				counter.exit();
+			}
+		}
+		final long statements = counter.getCount();
+		final long start = System.nanoTime();
+		final R result;
+		try {
+			result = call.get();
+		} finally {
+			counter.exit();
+		}
+		final long nanos = System.nanoTime() - start;
+
+		final long rows;
+		if (result instanceof Collection) {
+			rows = ((Collection<?>) result).size();
+		} else if (result instanceof PaginatedData) {
+			rows = ((PaginatedData<?>) result).getElements().size();
+		} else if (result instanceof Optional) {
+			rows = ((Optional<?>) result).isPresent() ? 1 : 0;
+		} else {
+			rows = result != null ? 1 : 0;
+		}
+		metrics.record(this.resourceClass, operation, filters, nanos, rows, counter.getCount() - statements);
+		return result;
+	}
+
+	/**
+	 * Open the Stream and report it to getQueryMetrics() as a STREAM operation when it is closed: the time and the
+	 * statements of the session spent opening it and reading its entities, the consumer excluded, and the number of
+	 * entities returned. Streams that fail or are opened by another measured operation are not reported.
+	 *
+	 * @param em
+	 * @param filters: can be NULL
+	 * @param open
+	 * @return
+	 */
+	private Stream<T> measureStream(EntityManager em, Set<FilterParameter> filters, Supplier<Stream<T>> open) {
+		final QueryMetrics metrics = this.getQueryMetrics();
+		if (metrics == QueryMetrics.NONE) {
+			return open.get();
+		}
+		final StatementCounter counter = StatementCounter.of(em);
+		if (counter.isMeasuring()) {
+			return open.get();
+		}
+		final StreamMeasure measure = new StreamMeasure(counter);
+		final Stream<T> source = measure.step(open);
+		final Spliterator<T> entities = source.spliterator();
+		final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			private T next;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				if (!measure.step(() -> entities.tryAdvance(entity -> this.next = entity))) {
+					return false;
+				}
+				measure.rows++;
+				action.accept(this.next);
+				return true;
+			}
+		};
+
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			try {
+				source.close();
+			} finally {
+				if (!measure.failed) {
+					metrics.record(this.resourceClass, QueryMetrics.Operation.STREAM, filters, measure.nanos,
+							measure.rows, measure.statements);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Create the native query that selects (or counts) the ids of the entities not in the temporary table
+	 */
+	private javax.persistence.Query createIdTableQuery(EntityManager em, TemporaryIdTable idTable, boolean count) {
+		final AbstractEntityPersister persister = (AbstractEntityPersister) em.unwrap(SessionImplementor.class)
+				.getFactory().getMetamodel().entityPersister(this.resourceClass);
+		final String idColumn = "e." + persister.getIdentifierColumnNames()[0];
+		final String from = " FROM " + persister.getTableName() + " e WHERE " + idTable.notExists(idColumn);
+		if (count) {
+			return em.createNativeQuery("SELECT COUNT(*)" + from);
+		}
+		return em.createNativeQuery("SELECT " + idColumn + " AS entity_id" + from + " ORDER BY " + idColumn)
+				.unwrap(NativeQuery.class).addScalar("entity_id", persister.getIdentifierType());
+	}
+
+	private String normalizeIdentifier(String identifier, boolean upperCase) {
+		if (identifier.length() > 1 && "\"`[".indexOf(identifier.charAt(0)) > -1) {
+			return identifier.substring(1, identifier.length() - 1);
+		}
+		return upperCase ? identifier.toUpperCase(Locale.ROOT) : identifier.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Convert the ids to the Java type of the identifier of the entity (es: Integer to Long), so that they are equal
+	 * to the ids of the loaded entities. Ids of composite identifiers are returned as they are.
+	 *
+	 * @param em
+	 * @param ids
+	 * @return
+	 */
+	private List<Object> normalizeIds(EntityManager em, Collection<?> ids) {
+		final SessionImplementor session = em.unwrap(SessionImplementor.class);
+		final Type idType = session.getFactory().getMetamodel().entityPersister(this.resourceClass)
+				.getIdentifierType();
+		if (!(idType instanceof AbstractStandardBasicType)) {
+			return new ArrayList<>(ids);
+		}
+		final JavaTypeDescriptor<?> descriptor = ((AbstractStandardBasicType<?>) idType).getJavaTypeDescriptor();
+		final List<Object> normalized = new ArrayList<>(ids.size());
+		for (Object id : ids) {
+			normalized.add(id == null || descriptor.getJavaTypeClass().isInstance(id) ? id
+					: descriptor.wrap(id, session));
+		}
+		return normalized;
+	}
+
+	/**
+	 * Return TRUE if a subclass overrides copyCachedEntity(...)
+	 *
+	 * @return
+	 */
+	private boolean overridesCopyCachedEntity() {
+		for (Class<?> clazz = this.getClass(); clazz != BaseEntityDAO.class; clazz = clazz.getSuperclass()) {
+			try {
+				clazz.getDeclaredMethod("copyCachedEntity", BaseEntity.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not declared by this class
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Run the supplier loading the entities of the queries of this DAO read-only (org.hibernate.readOnly):
+	 * Hibernate keeps no loaded-state snapshot of them and doesn't dirty-check them at flush, so changes to them are
+	 * not written. Use it for the reads whose entities are not modified, also inside a write transaction. Only the
+	 * queries executed by the supplier are affected (es: not the pages of a Stream consumed after it returns).
+	 * Queries in a read-only session load read-only entities anyway.
+	 *
+	 * @param supplier
+	 * @return
+	 */
+	public <R> R readOnly(Supplier<R> supplier) {
+		if (Boolean.TRUE.equals(this.readOnlyScope.get())) {
+			return supplier.get();
+		}
+		this.readOnlyScope.set(Boolean.TRUE);
+		try {
+			return supplier.get();
+		} finally {
+			this.readOnlyScope.remove();
+		}
+	}
+
+	/**
+	 * Read the value of a dotted path (es: "customer.name") from an entity, following its attributes through the
+	 * JPA metamodel
+	 *
+	 * @param em
+	 * @param entity
+	 * @param path
+	 * @return
+	 */
+	private Object readPathValue(EntityManager em, Object entity, String path) {
+		Object value = entity;
+		for (String attributeName : path.split("\\.")) {
+			if (value == null) {
+				return null;
+			}
+			if (value instanceof HibernateProxy) {
+				value = ((HibernateProxy) value).getHibernateLazyInitializer().getImplementation();
+			}
+
+			Attribute<?, ?> attribute = em.getMetamodel().managedType(value.getClass()).getAttribute(attributeName);
+			if (attribute.isCollection()) {
+				throw new FilterParameterException(
+						String.format("Field '%s' is a collection and can't be used as cursor", path));
+			}
+
+			Member member = attribute.getJavaMember();
+			try {
+				if (member instanceof Field) {
+					((Field) member).setAccessible(true);
+					value = ((Field) member).get(value);
+				} else {
+					((Method) member).setAccessible(true);
+					value = ((Method) member).invoke(value);
+				}
+			} catch (ReflectiveOperationException e) {
+				throw new FilterParameterException(String.format("Field '%s' not readable", path), e);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Persiste or update an entity of specified type and return it
+	 *
+	 * @param em
+	 * @param entity
+	 * @return
+	 */
+	public T save(EntityManager em, T entity) {
+		return this.measure(em, QueryMetrics.Operation.SAVE, null, () -> {
+			if (entity.getId() == null) {
+				this.create(em, entity);
+				return entity;
+			} else {
+				return this.update(em, entity);
+			}
+		});
+	}
+
+	/**
+	 * Persist or update all the entities in batches of getBatchSize(): new entities are persisted first, then the
+	 * existing ones are merged, grouped by class so that JDBC batching is not interrupted. The persistence context
+	 * is flushed and cleared after each batch, so the saved entities and the ones managed by em before the call are
+	 * detached when the method returns; new entities have their id assigned.
+	 *
+	 * @param em
+	 * @param entities
+	 * @return the number of entities written by each batch
+	 */
+	public BatchResult saveAll(EntityManager em, Collection<T> entities) {
+		final List<T> created = new ArrayList<>();
+		final List<T> updated = new ArrayList<>();
+		for (T entity : entities) {
+			if (entity.getId() == null) {
+				created.add(entity);
+			} else {
+				updated.add(entity);
+			}
+		}
+		final Comparator<T> byClass = Comparator.comparing(e -> Hibernate.getClass(e).getName());
+		created.sort(byClass);
+		updated.sort(byClass);
+
+		final List<T> saved = new ArrayList<>(created.size() + updated.size());
+		saved.addAll(created);
+		saved.addAll(updated);
+		this.invalidateEntityCache(em, updated);
+		return this.writeInBatches(em, saved, entity -> {
+			if (entity.getId() == null) {
+				this.create(em, entity);
+			} else {
+				em.merge(entity);
+			}
+		});
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
+	 * and filtered by a list of FilterParameter. All filters are combined in AND, FilterGroups combine them in OR
+	 * and NOT within the same query.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @return
+	 */
+	public PaginatedData<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			PageParameter page) {
+		return this.search(em, filters, order, page, this.getCountStrategy());
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
+	 * and filtered by a list of FilterParameter. All filters are combined in AND.<br>
+	 * The total count is computed with the given CountStrategy.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @param countStrategy
+	 * @return
+	 */
+	public PaginatedData<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			PageParameter page, CountStrategy countStrategy) {
+
+		if (this.isIdsFirstSearch()) {
+			return this.searchIdsFirst(em, filters, order, page, countStrategy, null);
+		}
+
+		final CompletableFuture<CountResult> countFuture = this.startCount(em, filters, countStrategy);
+
+		final TypedQuery<T> typedQuery = this.createQuery(em, QueryType.ENTITIES, this.resourceClass, filters, order);
+		final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
+		List<T> results = this.measure(em, QueryMetrics.Operation.SEARCH_PAGE, filters,
+				() -> typedQuery.setFirstResult(first).setMaxResults(page.getSize()).getResultList());
+
+		final CountResult count = this.awaitCount(countFuture);
+		return new PaginatedData<>(results, page.getPageNumber(), page.getSize(), count.getIntTotal(),
+				count.getTotalType(), count.getStrategy());
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
+	 * and filtered by a list of FilterParameter, loaded with the associations of the FetchPlan. All filters are
+	 * combined in AND.<br>
+	 * The ids of the page are selected first, so that fetching collections doesn't paginate in memory (see
+	 * searchIdsFirst).
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @param fetchPlan: the associations to be loaded with the entities, can be NULL
+	 * @return
+	 */
+	public PaginatedData<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			PageParameter page, FetchPlan fetchPlan) {
+		return this.searchIdsFirst(em, filters, order, page, fetchPlan);
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
+	 * and filtered by a list of FilterParameter, loaded in two phases. All filters are combined in AND.<br>
+	 * First the ids of the page are selected (QueryType.IDS), then the entities are loaded with a single IN query
+	 * in the same order. Filters through joined collections don't make the database group whole rows, and the
+	 * entities are loaded only for the rows of the page.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @param fetchPlan: the associations to be loaded with the entities, can be NULL
+	 * @return
+	 */
+	public PaginatedData<T> searchIdsFirst(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			PageParameter page, FetchPlan fetchPlan) {
+		return this.searchIdsFirst(em, filters, order, page, this.getCountStrategy(), fetchPlan);
+	}
+
+	private PaginatedData<T> searchIdsFirst(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			PageParameter page, CountStrategy countStrategy, FetchPlan fetchPlan) {
+
+		final CompletableFuture<CountResult> countFuture = this.startCount(em, filters, countStrategy);
+
+		final TypedQuery<Object> idsQuery = this.createQuery(em, QueryType.IDS, Object.class, filters, order);
+		final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
+		final List<T> results = this.measure(em, QueryMetrics.Operation.SEARCH_PAGE, filters, () -> this.fetchByIds(em,
+				idsQuery.setFirstResult(first).setMaxResults(page.getSize()).getResultList(), fetchPlan));
+
+		final CountResult count = this.awaitCount(countFuture);
+		return new PaginatedData<>(results, page.getPageNumber(), page.getSize(), count.getIntTotal(),
+				count.getTotalType(), count.getStrategy());
+	}
+
+	/**
+	 * Return a single page of the attributes listed in the Projection, as Tuples, of the entities of specified
+	 * type sorted by info contained in OrderParameter and filtered by a list of FilterParameter. All filters are
+	 * combined in AND.<br>
+	 * Entities are not loaded: only the selected columns are read. Each Tuple contains the values in the order of
+	 * the Projection's paths, with aliases Projection.alias(path). Paths should be single valued: selecting an
+	 * attribute of a collection returns a row for each element.
+	 *
+	 * @param em
+	 * @param projection
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @return
+	 */
+	public PaginatedData<Tuple> searchProjection(EntityManager em, Projection projection,
+			Set<FilterParameter> filters, OrderParameter order, PageParameter page) {
+		return this.searchProjection(em, projection, Tuple.class, filters, order, page);
+	}
+
+	/**
+	 * Return a single page of DTOs built from the attributes listed in the Projection of the entities of specified
+	 * type sorted by info contained in OrderParameter and filtered by a list of FilterParameter. All filters are
+	 * combined in AND.<br>
+	 * Entities are not loaded: only the selected columns are read and passed to the DTO's constructor in the order
+	 * of the Projection's paths. Paths should be single valued: selecting an attribute of a collection returns a
+	 * row for each element.
+	 *
+	 * @param em
+	 * @param projection
+	 * @param dtoClass:   a class with a public constructor taking the selected attributes, or Tuple
+	 * @param filters
+	 * @param order
+	 * @param page
+	 * @return
+	 */
+	public <D> PaginatedData<D> searchProjection(EntityManager em, Projection projection, Class<D> dtoClass,
+			Set<FilterParameter> filters, OrderParameter order, PageParameter page) {
+
+		final CompletableFuture<CountResult> countFuture = this.startCount(em, filters, this.getCountStrategy());
+
+		final TypedQuery<D> typedQuery = this.applyQueryHints(
+				em.createQuery(this.buildProjectionCriteriaQuery(em, projection, dtoClass, filters, order)));
+		final int first = this.calculateFirstResult(page.getPageNumber(), page.getSize());
+		List<D> results = this.measure(em, QueryMetrics.Operation.SEARCH_PAGE, filters,
+				() -> typedQuery.setFirstResult(first).setMaxResults(page.getSize()).getResultList());
+
+		final CountResult count = this.awaitCount(countFuture);
+		return new PaginatedData<>(results, page.getPageNumber(), page.getSize(), count.getIntTotal(),
+				count.getTotalType(), count.getStrategy());
+	}
+
+	/**
+	 * Return a single page of entities of specified type sorted by info contained in OrderParameter
+	 * and filtered by a list of FilterParameter, using keyset (seek) pagination. All filters are combined in AND.
+	 * <br>
+	 * Instead of skipping the rows of the previous pages, the query starts right after the row pointed by the
+	 * cursor, so deep pages cost as much as the first one. Rows are sorted by the OrderParameter and then by "id"
+	 * as tiebreaker; the total count is not computed.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order:   NULL to sort by "id" only
+	 * @param cursor:  the cursor returned by a previous call and the page size
+	 * @return an instance of CursorPaginatedData with the next and previous cursors
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public CursorPaginatedData<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order,
+			CursorParameter cursor) {
+
+		final PageCursor pageCursor = PageCursor.decode(cursor.getCursor());
+		final boolean backward = pageCursor != null && pageCursor.getDirection().equals(PageCursor.Direction.PREVIOUS);
+
+		CriteriaQuery<T> query = this.buildKeysetCriteriaQuery(em, filters, order, pageCursor);
+		List<T> results = new ArrayList<>(this.measure(em, QueryMetrics.Operation.SEARCH_PAGE, filters,
+				() -> this.applyQueryHints(em.createQuery(query)).setMaxResults(cursor.getSize() + 1).getResultList()));
+
+		final boolean hasMore = results.size() > cursor.getSize();
+		if (hasMore) {
+			results.remove(results.size() - 1);
+		}
+		if (backward) {
+			Collections.reverse(results);
+		}
+
+		String previousCursor = null;
+		String nextCursor = null;
+		if (!results.isEmpty()) {
+			if (backward ? hasMore : pageCursor != null) {
+				previousCursor = this.buildPageCursor(em, results.get(0), order, PageCursor.Direction.PREVIOUS);
+			}
+			if (backward || hasMore) {
+				nextCursor = this.buildPageCursor(em, results.get(results.size() - 1), order,
+						PageCursor.Direction.NEXT);
+			}
+		}
+
+		return new CursorPaginatedData<>(results, cursor.getSize(), previousCursor, nextCursor);
+	}
+
+	/**
+	 * Return a list of entities of specified type sorted by info contained in OrderParameter and filtered by
+	 * a list of FilterParameter.  All filters are combined in AND.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @return
+	 */
+	public List<T> search(EntityManager em, Set<FilterParameter> filters, OrderParameter order) {
+		final TypedQuery<T> typedQuery = this.createQuery(em, QueryType.ENTITIES, this.resourceClass, filters, order);
+		return this.measure(em, QueryMetrics.Operation.SEARCH_LIST, filters, typedQuery::getResultList);
+	}
+
+	/**
+	 * Start the count of a paginated search: on getCountExecutor(), in a read-only transaction of
+	 * getRevisionJPAApi() or of a new EntityManager, if the DAO has one and it accepts the task, otherwise
+	 * immediately on the caller's EntityManager.<br>
+	 * A parallel count runs in a separate transaction, so it doesn't see the changes of em that are not committed.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param strategy
+	 * @return
+	 */
+	private CompletableFuture<CountResult> startCount(EntityManager em, Set<FilterParameter> filters,
+			CountStrategy strategy) {
+		final Executor executor = this.getCountExecutor();
+		if (executor != null) {
+			final CompletableFuture<CountResult> countFuture = this.startParallelCount(em, filters, strategy, executor);
+			if (!this.isRejected(countFuture)) {
+				return countFuture;
+			}
+			this.logger().debug("Parallel count of {} rejected, fall back on sequential count", this.resourceClass);
+		}
+		return CompletableFuture.completedFuture(this.measure(em, QueryMetrics.Operation.SEARCH_COUNT, filters,
+				() -> this.count(em, filters, strategy)));
+	}
+
+	/**
+	 * Start the count on the executor, in a read-only transaction of getRevisionJPAApi() if the DAO has one,
+	 * otherwise of a new EntityManager. If the executor rejects the task the future fails with a
+	 * RejectedExecutionException.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param strategy
+	 * @param executor
+	 * @return
+	 */
+	private CompletableFuture<CountResult> startParallelCount(EntityManager em, Set<FilterParameter> filters,
+			CountStrategy strategy, Executor executor) {
+		final RevisionJPAApi jpaApi = this.getRevisionJPAApi();
+		if (jpaApi != null) {
+			return jpaApi.withReadOnlyTransactionAsync(this.resourceClass.getSimpleName() + " count",
+					countEm -> this.countInReadOnlyTransaction(countEm, filters, strategy), executor)
+					.toCompletableFuture();
+		}
+		final EntityManagerFactory emf = em.getEntityManagerFactory();
+		try {
+			return CompletableFuture.supplyAsync(() -> this.countInReadOnlyTransaction(emf, filters, strategy),
+					executor);
+		} catch (RejectedExecutionException e) {
+			final CompletableFuture<CountResult> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+	}
+
+	/**
+	 * Return a Stream of all entities of specified type, see stream(em, filters, order)
+	 *
+	 * @param em
+	 * @return
+	 */
+	public Stream<T> stream(EntityManager em) {
+		return this.stream(em, new HashSet<>(), null);
+	}
+
+	/**
+	 * Return a Stream of entities of specified type sorted by info contained in OrderParameter and filtered by a
+	 * list of FilterParameter. All filters are combined in AND.<br>
+	 * Rows are read with a forward-only cursor, getStreamFetchSize() at a time, and the EntityManager is cleared
+	 * every getStreamDetachInterval() rows, so the memory used does not depend on the number of results: the
+	 * returned entities are detached with the associations loaded through them, and so are the entities managed by
+	 * em before the call. Pending changes of em are flushed when the Stream is created; changes made to the returned
+	 * entities are not persisted unless they are merged.<br>
+	 * The Stream holds a database cursor: it must be consumed inside the transaction and closed (try-with-resources).
+	 * Some drivers (es: PostgreSQL) stream the rows only if the connection is not in autocommit.<br>
+	 * Filters with IN or NOT_IN operators are read with keyset pages of getStreamFetchSize() entities instead of a
+	 * cursor, since Hibernate can't scroll queries with list parameters.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param order
+	 * @return
+	 */
+	public Stream<T> stream(EntityManager em, Set<FilterParameter> filters, OrderParameter order) {
+		if (FilterGroup.anyMatch(filters, QueryManager::isInList)) {
+			// Hibernate doesn't expand the list parameters of scrolled queries
+			return this.measureStream(em, filters, () -> this.streamByPages(em, filters, order));
+		}
+		return this.measureStream(em, filters, () -> this.streamByScroll(em, filters, order));
+	}
+
+	/**
+	 * Stream the entities with a forward-only cursor, clearing the EntityManager every getStreamDetachInterval()
+	 * entities
+	 */
+	private Stream<T> streamByScroll(EntityManager em, Set<FilterParameter> filters, OrderParameter order) {
+		this.flushBeforeStream(em);
+		final TypedQuery<T> typedQuery = this.createQuery(em, QueryType.ENTITIES, this.resourceClass, filters, order);
+		final ScrollableResults results = typedQuery.unwrap(org.hibernate.query.Query.class)
+				.setFetchSize(this.getStreamFetchSize())
+				.scroll(ScrollMode.FORWARD_ONLY);
+
+		final int detachInterval = this.getStreamDetachInterval();
+		final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			private int returned = 0;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				if (this.returned >= detachInterval) {
+					em.clear();
+					this.returned = 0;
+				}
+				if (!results.next()) {
+					return false;
+				}
+				T entity = BaseEntityDAO.this.resourceClass.cast(results.get(0));
+				this.returned++;
+				action.accept(entity);
+				return true;
+			}
+		};
+
+		return StreamSupport.stream(spliterator, false).onClose(results::close);
+	}
+
+	/**
+	 * Stream the entities reading keyset pages of getStreamFetchSize() entities, clearing the EntityManager before
+	 * the next page is read
+	 */
+	private Stream<T> streamByPages(EntityManager em, Set<FilterParameter> filters, OrderParameter order) {
+		this.flushBeforeStream(em);
+		final int pageSize = this.getStreamFetchSize();
+		final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			private List<T> page = new ArrayList<>();
+
+			private int next = 0;
+
+			private String cursor = null;
+
+			private boolean last = false;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				while (this.next == this.page.size()) {
+					if (!this.page.isEmpty()) {
+						em.clear();
+					}
+					if (this.last) {
+						return false;
+					}
+					CursorPaginatedData<T> data = BaseEntityDAO.this.search(em, filters, order,
+							new CursorParameter(this.cursor, pageSize));
+					this.page = new ArrayList<>(data.getElements());
+					this.next = 0;
+					this.cursor = data.getNextCursor();
+					this.last = this.cursor == null;
+				}
+				action.accept(this.page.get(this.next++));
+				return true;
+			}
+		};
+
+		return StreamSupport.stream(spliterator, false);
+	}
+
+	/**
+	 * Return a Stream of the entities of specified type that don't have their id in the ids set, sorted by id,
+	 * see stream(em, filters, order).<br>
+	 * Sets of at least getIdTableThreshold() ids are loaded in a temporary table and excluded with an anti-join,
+	 * when the database supports it and em is in a read-write transaction (see TemporaryIdTable): the ids of the
+	 * complement are read with a forward-only cursor and the entities are loaded getStreamFetchSize() at a time,
+	 * clearing the EntityManager before each batch as stream does. The table is closed when the Stream is closed.<br>
+	 * Otherwise sets that would bind more than getMaxParameters() parameters are excluded in memory from the ids of
+	 * all the entities, loaded in the same way.
+	 *
+	 * @param em
+	 * @param ids
+	 * @return
+	 */
+	public Stream<T> streamIfNotInIdSet(EntityManager em, Set<? extends Object> ids) {
+		if (!this.useIdTable(em, ids) && this.isOverParameterLimit(ids)) {
+			return this.measureStream(em, null, () -> {
+				this.flushBeforeStream(em);
+				return this.streamByIds(em, this.getIdsNotIn(em, ids).iterator());
+			});
+		}
+		if (!this.useIdTable(em, ids)) {
+			return this.stream(em, this.buildNotInIdSetFilters(ids),
+					new OrderParameter("id", OrderParameter.OrderType.ASC));
+		}
+		return this.measureStream(em, null, () -> this.streamNotInIdTable(em, ids));
+	}
+
+	/**
+	 * Stream the entities with the given ids, in the same order, loading them getStreamFetchSize() at a time and
+	 * clearing em before each batch
+	 */
+	private Stream<T> streamByIds(EntityManager em, Iterator<?> ids) {
+		final int batchSize = this.getStreamFetchSize();
+		final Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			private List<T> batch = new ArrayList<>();
+
+			private int next = 0;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				while (this.next == this.batch.size()) {
+					if (!this.batch.isEmpty()) {
+						em.clear();
+					}
+					final List<Object> batchIds = new ArrayList<>(batchSize);
+					while (batchIds.size() < batchSize && ids.hasNext()) {
+						batchIds.add(ids.next());
+					}
+					if (batchIds.isEmpty()) {
+						return false;
+					}
+					this.batch = BaseEntityDAO.this.fetchByIds(em, batchIds, null);
+					this.next = 0;
+				}
+				action.accept(this.batch.get(this.next++));
+				return true;
+			}
+		};
+
+		return StreamSupport.stream(spliterator, false);
+	}
+
+	/**
+	 * Stream the entities whose id is not in a temporary table of the ids, loading them getStreamFetchSize() at a
+	 * time
+	 */
+	private Stream<T> streamNotInIdTable(EntityManager em, Set<? extends Object> excludedIds) {
+		final TemporaryIdTable idTable = this.createIdTable(em, excludedIds);
+		final ScrollableResults results;
+		try {
+			results = this.createIdTableQuery(em, idTable, false).unwrap(NativeQuery.class)
+					.setFetchSize(this.getStreamFetchSize()).scroll(ScrollMode.FORWARD_ONLY);
+		} catch (RuntimeException e) {
+			idTable.close();
+			throw e;
+		}
+
+		final Iterator<Object> ids = new Iterator<Object>() {
+
+			private Boolean hasNext;
+
+			@Override
+			public boolean hasNext() {
+				if (this.hasNext == null) {
+					this.hasNext = results.next();
+				}
+				return this.hasNext;
+			}
+
+			@Override
+			public Object next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				this.hasNext = null;
+				return results.get(0);
+			}
+		};
+
+		return this.streamByIds(em, ids).onClose(() -> {
+			try {
+				results.close();
+			} finally {
+				idTable.close();
+			}
+		});
+	}
+
+	protected T update(EntityManager em, T entity) {
+		T updated = em.merge(entity);
+		em.flush();
+		this.invalidateEntityCache(em, entity.getId());
+		return updated;
+	}
+
+	/**
+	 * Update with a single statement all the entities of specified type filtered by a list of FilterParameter. All
+	 * filters are combined in AND, an empty set updates all the entities.<br>
+	 * The statement bypasses the persistence context: entities already loaded by em keep their old values and
+	 * versions are not incremented.
+	 *
+	 * @param em
+	 * @param filters
+	 * @param assignments: the new values, by attribute name (es: "status"; embedded attributes as
+	 *                     "embedded.attribute"). Values can be NULL
+	 * @return the number of updated entities
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public int updateWhere(EntityManager em, Set<FilterParameter> filters, Map<String, Object> assignments) {
+		if (assignments == null || assignments.isEmpty()) {
+			throw new IllegalArgumentException("Assignments can't be null or empty");
+		}
+
+		CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+		CriteriaUpdate<T> update = criteriaBuilder.createCriteriaUpdate(this.resourceClass);
+		Root<T> root = update.from(this.resourceClass);
+
+		for (Map.Entry<String, Object> assignment : assignments.entrySet()) {
+			Path path = root;
+			for (String attribute : assignment.getKey().split("\\.")) {
+				path = path.get(attribute);
+			}
+			update.set(path, assignment.getValue());
+		}
+
+		update.where(this.buildBulkPredicates(criteriaBuilder, update, root, filters));
+		this.invalidateEntityCache(em);
+		return em.createQuery(update).executeUpdate();
+	}
+
+	/**
+	 * Return TRUE if the ids are enough to be loaded in a TemporaryIdTable and the table can be created: the database
+	 * supports it and em is in a transaction (outside a transaction PostgreSQL would drop the table as soon as it is
+	 * created)
+	 */
+	private boolean useIdTable(EntityManager em, Set<? extends Object> ids) {
+		if (ids.size() < this.getIdTableThreshold() || !em.isJoinedToTransaction()
+				|| !TemporaryIdTable.isSupported(em)) {
+			return false;
+		}
+		// the table is written, read-only sessions and connections can't create it
+		final Session session = em.unwrap(Session.class);
+		return !session.isDefaultReadOnly() && !session.doReturningWork(Connection::isReadOnly);
+	}
+
+	private BatchResult writeInBatches(EntityManager em, List<T> entities, Consumer<T> write) {
+		final int batchSize = Math.max(1, this.getBatchSize(em));
+		final BatchResult result = new BatchResult();
+		int pending = 0;
+		for (T entity : entities) {
+			write.accept(entity);
+			if (++pending == batchSize) {
+				em.flush();
+				em.clear();
+				result.addBatch(pending);
+				pending = 0;
+			}
+		}
+		if (pending > 0) {
+			em.flush();
+			em.clear();
+			result.addBatch(pending);
+		}
+		return result;
 	}
 
 }
@@ -0,0 +1,88 @@
+package it.drwolf.base.daos.common;
+
+import javax.persistence.criteria.JoinType;
+
+/**
+ * A dotted path resolved against the metamodel of an entity by PathResolver: the
+ * last attribute of the path, with the resolved path of the attribute before it
+ * as parent (NULL for attributes of the root entity).
+ *
+ */
+public class AttributePath {
+
+	private final AttributePath parent;
+
+	private final String path;
+
+	private final String name;
+
+	private final boolean collection;
+
+	private final Class<?> javaType;
+
+	AttributePath(AttributePath parent, String name, boolean collection, Class<?> javaType) {
+		this.parent = parent;
+		this.path = parent == null ? name : parent.getPath() + "." + name;
+		this.name = name;
+		this.collection = collection;
+		this.javaType = javaType;
+	}
+
+	/**
+	 * Return the Java type of the attribute, the type of the elements for
+	 * collections
+	 *
+	 * @return
+	 */
+	public Class<?> getJavaType() {
+		return this.javaType;
+	}
+
+	/**
+	 * Return the type of the join made by QueryManager to reach the attributes of
+	 * this one: LEFT from the root entity, INNER from the joined ones
+	 *
+	 * @return
+	 */
+	public JoinType getJoinType() {
+		return this.parent == null ? JoinType.LEFT : JoinType.INNER;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Return the resolved path of the previous attribute, NULL for attributes of
+	 * the root entity
+	 *
+	 * @return
+	 */
+	public AttributePath getParent() {
+		return this.parent;
+	}
+
+	public String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Return TRUE if the attribute is a collection (plural association or element
+	 * collection)
+	 *
+	 * @return
+	 */
+	public boolean isCollection() {
+		return this.collection;
+	}
+
+	public boolean isRootAttribute() {
+		return this.parent == null;
+	}
+
+	@Override
+	public String toString() {
+		return this.path;
+	}
+
+}
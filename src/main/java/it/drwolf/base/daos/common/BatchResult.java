@@ -0,0 +1,45 @@
+package it.drwolf.base.daos.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a batched write (es: saveAll, deleteAll): the number of entities
+ * written by each flush, in order
+ *
+ */
+public class BatchResult {
+
+	private final List<Integer> batchCounts = new ArrayList<>();
+
+	/**
+	 * Record a flushed batch
+	 *
+	 * @param count: the number of entities written by the batch
+	 */
+	public void addBatch(int count) {
+		if (count > 0) {
+			this.batchCounts.add(count);
+		}
+	}
+
+	/**
+	 * Return the number of entities written by each batch
+	 *
+	 * @return
+	 */
+	public List<Integer> getBatchCounts() {
+		return Collections.unmodifiableList(this.batchCounts);
+	}
+
+	/**
+	 * Return the number of entities written by all the batches
+	 *
+	 * @return
+	 */
+	public int getTotal() {
+		return this.batchCounts.stream().mapToInt(Integer::intValue).sum();
+	}
+
+}
@@ -0,0 +1,256 @@
+package it.drwolf.base.daos.common;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process cache with a maximum size and an optional time to live.<br>
+ * Entries are split in segments by the hash of the key, each one with its own
+ * lock and its own least recently used eviction, so that concurrent threads
+ * rarely wait for each other. Values are loaded outside the locks: two threads
+ * missing the same key at the same time can both load it. A value whose load
+ * started before an invalidation of its segment is returned but not cached,
+ * so that a slow load can't put back the value the invalidation removed.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class BoundedCache<K, V> {
+
+	private static class CacheEntry<V> {
+
+		private final V value;
+
+		private final long expiresAt;
+
+		CacheEntry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+	private static class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maximumSize;
+
+		/**
+		 * The number of invalidations of the segment, guarded by its lock
+		 */
+		private long invalidations;
+
+		Segment(int maximumSize) {
+			super(16, 0.75f, true);
+			this.maximumSize = maximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+			return this.size() > this.maximumSize;
+		}
+
+	}
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private static long toNanos(Duration ttl) {
+		if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("TTL can't be null or less than 1 ns");
+		}
+		return ttl.toNanos();
+	}
+
+	private final Segment<K, V>[] segments;
+
+	private final long ttlNanos;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Cache whose entries don't expire, they are only evicted
+	 *
+	 * @param maximumSize: the maximum number of entries
+	 */
+	public BoundedCache(int maximumSize) {
+		this(maximumSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param maximumSize: the maximum number of entries
+	 * @param ttl:         how long an entry is kept after it is loaded
+	 */
+	public BoundedCache(int maximumSize, Duration ttl) {
+		this(maximumSize, BoundedCache.toNanos(ttl));
+	}
+
+	@SuppressWarnings("unchecked")
+	private BoundedCache(int maximumSize, long ttlNanos) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size can't be less than 1");
+		}
+		int segmentsCount = Math.min(BoundedCache.MAX_SEGMENTS, Integer.highestOneBit(maximumSize));
+		this.segments = new Segment[segmentsCount];
+		for (int i = 0; i < segmentsCount; i++) {
+			this.segments[i] = new Segment<>((maximumSize + segmentsCount - 1) / segmentsCount);
+		}
+		this.ttlNanos = ttlNanos;
+	}
+
+	/**
+	 * Return the value of the key, loading it with the loader if it's missing or
+	 * expired. NULL values are not cached, nor values whose load started before
+	 * an invalidation of the segment of the key.
+	 *
+	 * @param key
+	 * @param loader
+	 * @return
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		final Segment<K, V> segment = this.segmentFor(key);
+		final long invalidations;
+		synchronized (segment) {
+			invalidations = segment.invalidations;
+		}
+		final V cached = this.getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		final V value = loader.apply(key);
+		if (value != null) {
+			synchronized (segment) {
+				if (segment.invalidations == invalidations) {
+					segment.put(key, new CacheEntry<>(value, System.nanoTime() + this.ttlNanos));
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Return the value of the key, NULL if it's missing or expired
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V getIfPresent(K key) {
+		final Segment<K, V> segment = this.segmentFor(key);
+		synchronized (segment) {
+			CacheEntry<V> entry = segment.get(key);
+			if (entry != null) {
+				if (entry.expiresAt - System.nanoTime() > 0) {
+					this.hits.increment();
+					return entry.value;
+				}
+				segment.remove(key);
+			}
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Return the number of get that found the key
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Return the number of get that loaded the key
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Put the value of the key, that expires after the TTL of the cache. NULL
+	 * values are not cached.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(K key, V value) {
+		this.put(key, value, this.ttlNanos);
+	}
+
+	/**
+	 * Put the value of the key, that expires after the given TTL or the TTL of
+	 * the cache, whichever is shorter. NULL values are not cached.
+	 *
+	 * @param key
+	 * @param value
+	 * @param ttl
+	 */
+	public void put(K key, V value, Duration ttl) {
+		this.put(key, value, Math.min(ttl.toNanos(), this.ttlNanos));
+	}
+
+	private void put(K key, V value, long ttlNanos) {
+		if (value == null || ttlNanos <= 0) {
+			return;
+		}
+		final Segment<K, V> segment = this.segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, new CacheEntry<>(value, System.nanoTime() + ttlNanos));
+		}
+	}
+
+	/**
+	 * Remove the key
+	 *
+	 * @param key
+	 */
+	public void invalidate(K key) {
+		final Segment<K, V> segment = this.segmentFor(key);
+		synchronized (segment) {
+			segment.invalidations++;
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * Remove all the keys
+	 */
+	public void invalidateAll() {
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				segment.invalidations++;
+				segment.clear();
+			}
+		}
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return this.segments[hash & (this.segments.length - 1)];
+	}
+
+	/**
+	 * Return the number of entries, expired ones included
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+}
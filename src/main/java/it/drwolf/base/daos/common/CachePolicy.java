@@ -0,0 +1,112 @@
+package it.drwolf.base.daos.common;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+
+import org.hibernate.CacheMode;
+
+/**
+ * How a DAO uses the Hibernate second-level and query caches: whether its
+ * queries are cacheable, in which query cache region, and the cache modes of
+ * find.<br>
+ * Entities are stored in the second-level cache only if they are @Cacheable
+ * and a cache provider is configured; query results are cached only if
+ * hibernate.cache.use_query_cache is enabled.
+ *
+ */
+public class CachePolicy {
+
+	/**
+	 * Queries are not cached, find uses the default cache modes
+	 */
+	public static final CachePolicy NONE = new CachePolicy(false, null, CacheRetrieveMode.USE, CacheStoreMode.USE);
+
+	/**
+	 * Return a policy that caches the queries in the default region of the DAO
+	 *
+	 * @return
+	 */
+	public static CachePolicy cacheable() {
+		return new CachePolicy(true, null, CacheRetrieveMode.USE, CacheStoreMode.USE);
+	}
+
+	/**
+	 * Return a policy that caches the queries in the given region
+	 *
+	 * @param region
+	 * @return
+	 */
+	public static CachePolicy cacheable(String region) {
+		return new CachePolicy(true, region, CacheRetrieveMode.USE, CacheStoreMode.USE);
+	}
+
+	private final boolean queryCacheable;
+
+	private final String queryRegion;
+
+	private final CacheRetrieveMode retrieveMode;
+
+	private final CacheStoreMode storeMode;
+
+	/**
+	 * @param queryCacheable: TRUE to cache the results of the DAO's queries
+	 * @param queryRegion:    the query cache region, NULL for the default region of
+	 *                        the DAO
+	 * @param retrieveMode:   the second-level cache retrieve mode of find
+	 * @param storeMode:      the second-level cache store mode of find
+	 */
+	public CachePolicy(boolean queryCacheable, String queryRegion, CacheRetrieveMode retrieveMode,
+			CacheStoreMode storeMode) {
+		if (retrieveMode == null || storeMode == null) {
+			throw new IllegalArgumentException("Cache modes can't be null");
+		}
+		if (queryRegion != null && queryRegion.trim().isEmpty()) {
+			throw new IllegalArgumentException("Query region can't be empty");
+		}
+		this.queryCacheable = queryCacheable;
+		this.queryRegion = queryRegion;
+		this.retrieveMode = retrieveMode;
+		this.storeMode = storeMode;
+	}
+
+	/**
+	 * Return the Hibernate CacheMode of the retrieve and store modes, for the
+	 * Session methods that don't take the JPA ones (es: multiLoad)
+	 *
+	 * @return
+	 */
+	public CacheMode getCacheMode() {
+		final boolean retrieve = this.retrieveMode == CacheRetrieveMode.USE;
+		switch (this.storeMode) {
+		case REFRESH:
+			return CacheMode.REFRESH;
+		case BYPASS:
+			return retrieve ? CacheMode.GET : CacheMode.IGNORE;
+		default:
+			return retrieve ? CacheMode.NORMAL : CacheMode.PUT;
+		}
+	}
+
+	/**
+	 *
+	 * Return the query cache region, NULL for the default region of the DAO
+	 *
+	 * @return
+	 */
+	public String getQueryRegion() {
+		return this.queryRegion;
+	}
+
+	public CacheRetrieveMode getRetrieveMode() {
+		return this.retrieveMode;
+	}
+
+	public CacheStoreMode getStoreMode() {
+		return this.storeMode;
+	}
+
+	public boolean isQueryCacheable() {
+		return this.queryCacheable;
+	}
+
+}
@@ -0,0 +1,64 @@
+package it.drwolf.base.daos.common;
+
+/**
+ * Hit, miss and put counts of the second-level cache region of an entity and
+ * of the query cache region of its DAO, since the statistics were last cleared.
+ * <br>
+ * Counts are collected only if hibernate.generate_statistics is enabled.
+ *
+ */
+public class CacheStatistics {
+
+	private final long entityHits;
+
+	private final long entityMisses;
+
+	private final long entityPuts;
+
+	private final long queryHits;
+
+	private final long queryMisses;
+
+	private final long queryPuts;
+
+	public CacheStatistics(long entityHits, long entityMisses, long entityPuts, long queryHits, long queryMisses,
+			long queryPuts) {
+		this.entityHits = entityHits;
+		this.entityMisses = entityMisses;
+		this.entityPuts = entityPuts;
+		this.queryHits = queryHits;
+		this.queryMisses = queryMisses;
+		this.queryPuts = queryPuts;
+	}
+
+	public long getEntityHits() {
+		return this.entityHits;
+	}
+
+	public long getEntityMisses() {
+		return this.entityMisses;
+	}
+
+	public long getEntityPuts() {
+		return this.entityPuts;
+	}
+
+	public long getQueryHits() {
+		return this.queryHits;
+	}
+
+	public long getQueryMisses() {
+		return this.queryMisses;
+	}
+
+	public long getQueryPuts() {
+		return this.queryPuts;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("entity hits=%d misses=%d puts=%d, query hits=%d misses=%d puts=%d", this.entityHits,
+				this.entityMisses, this.entityPuts, this.queryHits, this.queryMisses, this.queryPuts);
+	}
+
+}
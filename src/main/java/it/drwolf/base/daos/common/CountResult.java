@@ -0,0 +1,66 @@
+package it.drwolf.base.daos.common;
+
+/**
+ * Result of a count computed with a CountStrategy
+ *
+ */
+public class CountResult {
+
+	private final Long total;
+
+	private final PaginatedData.TotalType totalType;
+
+	private final CountStrategy strategy;
+
+	/**
+	 * @param total
+	 * @param totalType
+	 * @param strategy: the strategy that computed the total, NULL if it's
+	 *                  UNKNOWN
+	 */
+	public CountResult(Long total, PaginatedData.TotalType totalType, CountStrategy strategy) {
+		this.total = total;
+		this.totalType = totalType;
+		this.strategy = strategy;
+	}
+
+	public Long getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Return the total as PaginatedData keeps it: totals that don't fit in an
+	 * Integer are capped to Integer.MAX_VALUE, and reported as MORE_THAN (see
+	 * getTotalType())
+	 *
+	 * @return the total, NULL if it's UNKNOWN
+	 */
+	public Integer getIntTotal() {
+		return this.total != null ? (int) Math.min(this.total, Integer.MAX_VALUE) : null;
+	}
+
+	/**
+	 * Return the strategy that computed the total: it differs from the requested
+	 * one when the count fell back on another strategy (es: ESTIMATED with
+	 * filters falls back on CAPPED)
+	 *
+	 * @return the strategy, NULL if the total is UNKNOWN
+	 */
+	public CountStrategy getStrategy() {
+		return this.strategy;
+	}
+
+	/**
+	 * Return how the total has been computed, MORE_THAN if it doesn't fit in the
+	 * total of PaginatedData (see getIntTotal())
+	 *
+	 * @return
+	 */
+	public PaginatedData.TotalType getTotalType() {
+		if (this.total != null && this.total > Integer.MAX_VALUE) {
+			return PaginatedData.TotalType.MORE_THAN;
+		}
+		return this.totalType;
+	}
+
+}
@@ -0,0 +1,20 @@
+package it.drwolf.base.daos.common;
+
+/**
+ * How DAO's paginated methods compute the total count of the results
+ *
+ * <ul>
+ * <li><b>EXACT</b>: a count query over all matching rows</li>
+ * <li><b>ESTIMATED</b>: the row estimate kept by the database planner
+ * statistics, when the query has no filters. Filtered queries fall back on
+ * CAPPED, and tables without statistics on EXACT</li>
+ * <li><b>CAPPED</b>: counts at most N+1 rows, if there are more the total is
+ * reported as "more than N"</li>
+ * </ul>
+ * The strategy that actually computed a total is reported by
+ * PaginatedData.getCountStrategy().
+ *
+ */
+public enum CountStrategy {
+	EXACT, ESTIMATED, CAPPED
+}
@@ -0,0 +1,46 @@
+package it.drwolf.base.daos.common;
+
+import java.util.Collection;
+
+/**
+ *
+ * PaginatedData returned by keyset (cursor based) pagination.<br>
+ * Pages are not numbered and the total count is not computed: page, total and
+ * total type are always NULL. Use the next and previous cursors to move
+ * between pages.
+ *
+ * @param <T>
+ */
+public class CursorPaginatedData<T> extends PaginatedData<T> {
+
+	private final String nextCursor;
+
+	private final String previousCursor;
+
+	public CursorPaginatedData(Collection<T> elements, Integer size, String previousCursor, String nextCursor) {
+		super(elements, null, size, null, null);
+		this.previousCursor = previousCursor;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 *
+	 * Return the cursor of the following page, NULL if this is the last page
+	 *
+	 * @return
+	 */
+	public String getNextCursor() {
+		return this.nextCursor;
+	}
+
+	/**
+	 *
+	 * Return the cursor of the preceding page, NULL if this is the first page
+	 *
+	 * @return
+	 */
+	public String getPreviousCursor() {
+		return this.previousCursor;
+	}
+
+}
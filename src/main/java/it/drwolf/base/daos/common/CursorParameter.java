@@ -0,0 +1,49 @@
+package it.drwolf.base.daos.common;
+
+/**
+ *
+ * Parameter object that should be used in DAO's methods that return results
+ * paginated with a cursor (keyset pagination) instead of a page number
+ *
+ */
+public class CursorParameter {
+
+	private final String cursor;
+	private final Integer size;
+
+	/**
+	 * @param cursor: the opaque cursor returned by a previous
+	 *                CursorPaginatedData (next or previous). NULL to get the
+	 *                first page
+	 * @param size:   the page size
+	 */
+	public CursorParameter(String cursor, Integer size) {
+
+		if (cursor != null && cursor.trim().isEmpty()) {
+			this.cursor = null;
+		} else {
+			this.cursor = cursor;
+		}
+
+		if (size == null || size < 1) {
+			throw new IllegalArgumentException("Size can't be null or less than 1");
+		}
+		this.size = size;
+
+	}
+
+	/**
+	 *
+	 * Return the cursor, NULL if the first page is requested
+	 *
+	 * @return
+	 */
+	public String getCursor() {
+		return this.cursor;
+	}
+
+	public Integer getSize() {
+		return this.size;
+	}
+
+}
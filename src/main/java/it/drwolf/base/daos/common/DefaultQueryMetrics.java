@@ -0,0 +1,146 @@
+package it.drwolf.base.daos.common;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.interfaces.Loggable;
+
+/**
+ * QueryMetrics that keeps counters for each entity class and operation, logs a
+ * random sample of the operations at debug level and warns about the
+ * operations that execute too many statements, as N+1 loads do. Only sampled
+ * and warned operations format their filters.
+ *
+ */
+public class DefaultQueryMetrics implements QueryMetrics, Loggable {
+
+	/**
+	 * Counters of an operation of an entity class
+	 *
+	 */
+	public static class OperationStats {
+
+		private final LongAdder calls = new LongAdder();
+
+		private final LongAdder nanos = new LongAdder();
+
+		private final LongAdder rows = new LongAdder();
+
+		private final LongAdder statements = new LongAdder();
+
+		private final LongAccumulator maxStatements = new LongAccumulator(Long::max, 0);
+
+		public long getCalls() {
+			return this.calls.sum();
+		}
+
+		/**
+		 * Return the highest number of statements executed by a call
+		 *
+		 * @return
+		 */
+		public long getMaxStatements() {
+			return this.maxStatements.get();
+		}
+
+		/**
+		 * Return the mean latency, 0 if there are no calls
+		 *
+		 * @return
+		 */
+		public double getMeanMillis() {
+			final long calls = this.calls.sum();
+			return calls > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(this.nanos.sum()) / calls / 1000 : 0;
+		}
+
+		public long getRows() {
+			return this.rows.sum();
+		}
+
+		public long getStatements() {
+			return this.statements.sum();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("calls=%d, mean=%.1fms, rows=%d, statements=%d, max statements=%d", this.getCalls(),
+					this.getMeanMillis(), this.getRows(), this.getStatements(), this.getMaxStatements());
+		}
+
+	}
+
+	private final ClassValue<OperationStats[]> stats = new ClassValue<OperationStats[]>() {
+
+		@Override
+		protected OperationStats[] computeValue(Class<?> type) {
+			final OperationStats[] operations = new OperationStats[Operation.values().length];
+			for (int i = 0; i < operations.length; i++) {
+				operations[i] = new OperationStats();
+			}
+			return operations;
+		}
+
+	};
+
+	private final int sampleInterval;
+
+	private final long statementsThreshold;
+
+	/**
+	 * Sample 1 operation every 100 and warn about operations executing more than
+	 * 20 statements
+	 */
+	public DefaultQueryMetrics() {
+		this(100, 20);
+	}
+
+	/**
+	 * @param sampleInterval:      one operation every sampleInterval is logged
+	 * @param statementsThreshold: operations executing more statements are logged
+	 *                             as warnings
+	 */
+	public DefaultQueryMetrics(int sampleInterval, long statementsThreshold) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("Sample interval can't be less than 1");
+		}
+		this.sampleInterval = sampleInterval;
+		this.statementsThreshold = statementsThreshold;
+	}
+
+	/**
+	 * Return the counters of an operation of an entity class
+	 *
+	 * @param resourceClass
+	 * @param operation
+	 * @return
+	 */
+	public OperationStats getStats(Class<?> resourceClass, Operation operation) {
+		return this.stats.get(resourceClass)[operation.ordinal()];
+	}
+
+	@Override
+	public void record(Class<?> resourceClass, Operation operation, Set<FilterParameter> filters, long nanos,
+			long rows, long statements) {
+		final OperationStats operationStats = this.getStats(resourceClass, operation);
+		operationStats.calls.increment();
+		operationStats.nanos.add(nanos);
+		operationStats.rows.add(rows);
+		operationStats.statements.add(statements);
+		operationStats.maxStatements.accumulate(statements);
+
+		if (statements > this.statementsThreshold) {
+			this.logger().warn("{} {} [{}] executed {} statements for {} rows in {} ms", resourceClass.getSimpleName(),
+					operation, QueryMetrics.filterShape(filters), statements, rows,
+					TimeUnit.NANOSECONDS.toMillis(nanos));
+		} else if (this.logger().isDebugEnabled()
+				&& ThreadLocalRandom.current().nextInt(this.sampleInterval) == 0) {
+			this.logger().debug("{} {} [{}] {} ms, {} rows, {} statements", resourceClass.getSimpleName(), operation,
+					QueryMetrics.filterShape(filters), TimeUnit.NANOSECONDS.toMillis(nanos), rows, statements);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package it.drwolf.base.daos.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameter object that lists the associations to be loaded together with the
+ * entities returned by a DAO's method, to avoid lazy loading them one by one
+ * afterwards.<br>
+ * Associations are expressed as dotted paths from the root entity, es:
+ * "customer.address", or by the name of an entity graph declared on the entity
+ * with @NamedEntityGraph. The plan is applied as a JPA entity graph hint.
+ *
+ */
+public class FetchPlan {
+
+	/**
+	 * How the attributes not listed in the plan are loaded
+	 *
+	 */
+	public enum GraphType {
+		/**
+		 * Attributes not listed are loaded as mapped (javax.persistence.loadgraph)
+		 */
+		LOAD("javax.persistence.loadgraph"),
+		/**
+		 * Attributes not listed are treated as lazy (javax.persistence.fetchgraph)
+		 */
+		FETCH("javax.persistence.fetchgraph");
+
+		private final String hint;
+
+		private GraphType(String hint) {
+			this.hint = hint;
+		}
+
+		/**
+		 * Return the name of the JPA query hint
+		 *
+		 * @return
+		 */
+		public String getHint() {
+			return this.hint;
+		}
+	}
+
+	/**
+	 * Return a FetchPlan that loads the associations of the named entity graph
+	 *
+	 * @param graphName: the name of a @NamedEntityGraph of the entity
+	 * @return
+	 */
+	public static FetchPlan named(String graphName) {
+		return new FetchPlan(graphName, GraphType.LOAD);
+	}
+
+	/**
+	 * Return a FetchPlan that loads the given associations
+	 *
+	 * @param paths: es "customer", "customer.address"
+	 * @return
+	 */
+	public static FetchPlan of(String... paths) {
+		return new FetchPlan(Arrays.asList(paths));
+	}
+
+	private final List<String> paths;
+
+	private final String graphName;
+
+	private final GraphType graphType;
+
+	public FetchPlan(List<String> paths) {
+		this(paths, GraphType.LOAD);
+	}
+
+	/**
+	 * @param paths:     the dotted paths of the associations
+	 * @param graphType: LOAD or FETCH
+	 */
+	public FetchPlan(List<String> paths, GraphType graphType) {
+		if (paths == null) {
+			throw new IllegalArgumentException("Paths can't be null");
+		}
+		for (String path : paths) {
+			if (path == null || path.trim().isEmpty()) {
+				throw new IllegalArgumentException("Path can't be empty");
+			}
+		}
+		if (graphType == null) {
+			throw new IllegalArgumentException("Graph type can't be null");
+		}
+		this.paths = Collections.unmodifiableList(paths);
+		this.graphName = null;
+		this.graphType = graphType;
+	}
+
+	/**
+	 * @param graphName: the name of a @NamedEntityGraph of the entity
+	 * @param graphType: LOAD or FETCH
+	 */
+	public FetchPlan(String graphName, GraphType graphType) {
+		if (graphName == null || graphName.trim().isEmpty()) {
+			throw new IllegalArgumentException("Graph name can't be null or empty");
+		}
+		if (graphType == null) {
+			throw new IllegalArgumentException("Graph type can't be null");
+		}
+		this.paths = Collections.emptyList();
+		this.graphName = graphName;
+		this.graphType = graphType;
+	}
+
+	/**
+	 *
+	 * Return the name of the entity graph, NULL if the plan lists paths
+	 *
+	 * @return
+	 */
+	public String getGraphName() {
+		return this.graphName;
+	}
+
+	public GraphType getGraphType() {
+		return this.graphType;
+	}
+
+	/**
+	 *
+	 * Return the dotted paths of the associations to be loaded
+	 *
+	 * @return
+	 */
+	public List<String> getPaths() {
+		return this.paths;
+	}
+
+	/**
+	 *
+	 * Return TRUE if the plan doesn't load any association
+	 *
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return this.graphName == null && this.paths.isEmpty();
+	}
+
+}
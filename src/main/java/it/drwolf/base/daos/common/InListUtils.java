@@ -0,0 +1,91 @@
+package it.drwolf.base.daos.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utilities to bind large collections to IN parameters.<br>
+ * Collections are split in chunks of at most chunkSize values, to stay below
+ * the drivers' limits on parameters (es: 1000 values in an Oracle IN list), and
+ * each chunk is padded to a power of two repeating its last value, so that only
+ * a few distinct SQL strings are ever generated for lists of any size.<br>
+ * The chunks of a statement are bound together, so the total number of
+ * parameters of a statement must be capped too (es: 65535 on PostgreSQL,
+ * 2100 on SQL Server), see parameterCount.
+ *
+ */
+public class InListUtils {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	public static final int DEFAULT_MAX_PARAMETERS = 30000;
+
+	/**
+	 * Return the padded size of a chunk of "size" values: the next power of two,
+	 * at most chunkSize
+	 *
+	 * @param size
+	 * @param chunkSize
+	 * @return
+	 */
+	public static int bucketSize(int size, int chunkSize) {
+		if (size <= 1) {
+			return size;
+		}
+		return Math.min(Integer.highestOneBit(size - 1) << 1, chunkSize);
+	}
+
+	/**
+	 * Return the number of chunks needed to hold "size" values
+	 *
+	 * @param size
+	 * @param chunkSize
+	 * @return
+	 */
+	public static int chunkCount(int size, int chunkSize) {
+		return (size + chunkSize - 1) / chunkSize;
+	}
+
+	/**
+	 * Return the number of parameters bound by "size" values split in chunks:
+	 * the values and the padding of the last chunk
+	 *
+	 * @param size
+	 * @param chunkSize
+	 * @return
+	 */
+	public static long parameterCount(int size, int chunkSize) {
+		return (long) (size / chunkSize) * chunkSize + InListUtils.bucketSize(size % chunkSize, chunkSize);
+	}
+
+	/**
+	 * Split the values in chunks of at most chunkSize values, each one padded to
+	 * its bucket size
+	 *
+	 * @param values
+	 * @param chunkSize
+	 * @return
+	 */
+	public static <V> List<List<V>> partition(Collection<V> values, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0");
+		}
+
+		final List<V> list = new ArrayList<>(values);
+		final List<List<V>> chunks = new ArrayList<>(InListUtils.chunkCount(list.size(), chunkSize));
+		for (int from = 0; from < list.size(); from += chunkSize) {
+			List<V> chunk = new ArrayList<>(list.subList(from, Math.min(from + chunkSize, list.size())));
+			V last = chunk.get(chunk.size() - 1);
+			for (int i = chunk.size(); i < InListUtils.bucketSize(chunk.size(), chunkSize); i++) {
+				chunk.add(last);
+			}
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	private InListUtils() {
+	}
+
+}
@@ -0,0 +1,219 @@
+package it.drwolf.base.daos.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Position of a keyset (seek) pagination: the value of the sorting field and
+ * the id of the boundary row of a page.<br>
+ * It is exchanged with clients as an opaque URL-safe string, values are
+ * converted back to the attribute's Java type when the cursor is used.
+ *
+ */
+public class PageCursor {
+
+	public enum Direction {
+		NEXT, PREVIOUS
+	}
+
+	private static final byte VERSION = 1;
+
+	/**
+	 * Decode a cursor previously created by encode()
+	 *
+	 * @param cursor
+	 * @return the PageCursor, NULL if cursor is NULL
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public static PageCursor decode(String cursor) {
+		if (cursor == null) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+			if (in.readByte() != PageCursor.VERSION) {
+				throw new IllegalArgumentException("Unsupported cursor version");
+			}
+			Direction direction = Direction.values()[in.readByte()];
+			String id = in.readUTF();
+			String orderValue = in.readBoolean() ? in.readUTF() : null;
+			return new PageCursor(direction, orderValue, id);
+		} catch (IOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException(String.format("Invalid cursor '%s'", cursor), e);
+		}
+	}
+
+	private static String format(Object value) {
+		if (value == null) {
+			return null;
+		} else if (value instanceof Timestamp) {
+			return ((Timestamp) value).toInstant().toString();
+		} else if (value instanceof Date) {
+			return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+		} else if (value instanceof Calendar) {
+			return ((Calendar) value).toInstant().toString();
+		} else if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Create a cursor pointing to the row with the given sorting value and id
+	 *
+	 * @param direction
+	 * @param orderValue: the value of the sorting field of the row, NULL if the
+	 *                    query is sorted by id only
+	 * @param id
+	 * @return
+	 */
+	public static PageCursor of(Direction direction, Object orderValue, Object id) {
+		if (id == null) {
+			throw new IllegalArgumentException("Cursor id can't be null");
+		}
+		return new PageCursor(direction, PageCursor.format(orderValue), PageCursor.format(id));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object parse(String value, Class<?> type) {
+		if (value == null) {
+			return null;
+		} else if (type.equals(String.class)) {
+			return value;
+		} else if (type.equals(Long.class) || type.equals(long.class)) {
+			return Long.valueOf(value);
+		} else if (type.equals(Integer.class) || type.equals(int.class)) {
+			return Integer.valueOf(value);
+		} else if (type.equals(Short.class) || type.equals(short.class)) {
+			return Short.valueOf(value);
+		} else if (type.equals(Byte.class) || type.equals(byte.class)) {
+			return Byte.valueOf(value);
+		} else if (type.equals(Double.class) || type.equals(double.class)) {
+			return Double.valueOf(value);
+		} else if (type.equals(Float.class) || type.equals(float.class)) {
+			return Float.valueOf(value);
+		} else if (type.equals(Boolean.class) || type.equals(boolean.class)) {
+			return Boolean.valueOf(value);
+		} else if (type.equals(Character.class) || type.equals(char.class)) {
+			return value.charAt(0);
+		} else if (type.equals(BigDecimal.class)) {
+			return new BigDecimal(value);
+		} else if (type.equals(BigInteger.class)) {
+			return new BigInteger(value);
+		} else if (type.equals(UUID.class)) {
+			return UUID.fromString(value);
+		} else if (type.isEnum()) {
+			return Enum.valueOf((Class<Enum>) type, value);
+		} else if (type.equals(java.sql.Date.class)) {
+			return new java.sql.Date(Instant.parse(value).toEpochMilli());
+		} else if (type.equals(java.sql.Time.class)) {
+			return new java.sql.Time(Instant.parse(value).toEpochMilli());
+		} else if (Date.class.isAssignableFrom(type)) {
+			// Timestamp keeps the nanoseconds of the loaded value
+			return Timestamp.from(Instant.parse(value));
+		} else if (Calendar.class.isAssignableFrom(type)) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(Instant.parse(value).toEpochMilli());
+			return calendar;
+		} else if (type.equals(LocalDate.class)) {
+			return LocalDate.parse(value);
+		} else if (type.equals(LocalDateTime.class)) {
+			return LocalDateTime.parse(value);
+		} else if (type.equals(LocalTime.class)) {
+			return LocalTime.parse(value);
+		} else if (type.equals(Instant.class)) {
+			return Instant.parse(value);
+		} else if (type.equals(OffsetDateTime.class)) {
+			return OffsetDateTime.parse(value);
+		} else if (type.equals(ZonedDateTime.class)) {
+			return ZonedDateTime.parse(value);
+		}
+
+		try {
+			Method valueOf = type.getMethod("valueOf", String.class);
+			if (Modifier.isStatic(valueOf.getModifiers()) && type.isAssignableFrom(valueOf.getReturnType())) {
+				return valueOf.invoke(null, value);
+			}
+			return type.getConstructor(String.class).newInstance(value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(
+					String.format("Type %s not supported in cursor", type.getName()), e);
+		}
+	}
+
+	private final Direction direction;
+
+	private final String id;
+
+	private final String orderValue;
+
+	private PageCursor(Direction direction, String orderValue, String id) {
+		this.direction = direction;
+		this.orderValue = orderValue;
+		this.id = id;
+	}
+
+	/**
+	 * Encode the cursor as an opaque URL-safe string
+	 *
+	 * @return
+	 */
+	public String encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(PageCursor.VERSION);
+			out.writeByte(this.direction.ordinal());
+			out.writeUTF(this.id);
+			out.writeBoolean(this.orderValue != null);
+			if (this.orderValue != null) {
+				out.writeUTF(this.orderValue);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	public Direction getDirection() {
+		return this.direction;
+	}
+
+	/**
+	 * Return the id of the boundary row converted to the given type
+	 *
+	 * @param type
+	 * @return
+	 */
+	public Object getId(Class<?> type) {
+		return PageCursor.parse(this.id, type);
+	}
+
+	/**
+	 * Return the sorting value of the boundary row converted to the given type
+	 *
+	 * @param type
+	 * @return the value, NULL if the row had a NULL sorting value
+	 */
+	public Object getOrderValue(Class<?> type) {
+		return PageCursor.parse(this.orderValue, type);
+	}
+
+}
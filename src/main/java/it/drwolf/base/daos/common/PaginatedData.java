@@ -14,6 +14,10 @@ import java.util.Collection;
  */
 public class PaginatedData<T> {
 
+	public enum TotalType {
+		EXACT, ESTIMATED, MORE_THAN, UNKNOWN
+	}
+
 	private final Collection<T> elements;
 
 	private final Integer page;
@@ -22,11 +26,38 @@ public class PaginatedData<T> {
 
 	private final Integer total;
 
+	private final TotalType totalType;
+
+	private final CountStrategy countStrategy;
+
 	public PaginatedData(Collection<T> elements, Integer page, Integer size, Integer total) {
+		this(elements, page, size, total, TotalType.EXACT, CountStrategy.EXACT);
+	}
+
+	public PaginatedData(Collection<T> elements, Integer page, Integer size, Integer total, TotalType totalType) {
+		this(elements, page, size, total, totalType, null);
+	}
+
+	public PaginatedData(Collection<T> elements, Integer page, Integer size, Integer total, TotalType totalType,
+			CountStrategy countStrategy) {
 		this.elements = elements;
 		this.page = page;
 		this.size = size;
 		this.total = total;
+		this.totalType = totalType;
+		this.countStrategy = countStrategy;
+	}
+
+	/**
+	 *
+	 * Return the CountStrategy that computed the total. It differs from the one
+	 * of the DAO when the count fell back on another strategy (es: ESTIMATED
+	 * with filters falls back on CAPPED).
+	 *
+	 * @return the strategy, NULL if the total is UNKNOWN or it isn't reported
+	 */
+	public CountStrategy getCountStrategy() {
+		return this.countStrategy;
 	}
 
 	/**
@@ -63,10 +94,22 @@ public class PaginatedData<T> {
 	 *
 	 * Return the total count of the results
 	 *
-	 * @return
+	 * @return the total, NULL if it's UNKNOWN
 	 */
 	public Integer getTotal() {
 		return this.total;
 	}
 
+	/**
+	 *
+	 * Return how the total count has been computed: EXACT, ESTIMATED, MORE_THAN
+	 * (there are more results than the total) or UNKNOWN (the count didn't
+	 * complete in time)
+	 *
+	 * @return
+	 */
+	public TotalType getTotalType() {
+		return this.totalType;
+	}
+
 }
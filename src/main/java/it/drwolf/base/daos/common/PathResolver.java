@@ -0,0 +1,178 @@
+package it.drwolf.base.daos.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+
+import it.drwolf.base.daos.common.exceptions.FilterParameterException;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+
+/**
+ * Resolves the dotted paths of filters, orders and fetches (es:
+ * "customer.address.city") against the JPA metamodel of an entity, caching the
+ * AttributePath of every path, so that queries are built without splitting
+ * strings and bad paths are reported before the query is built.<br>
+ * Resolved paths hold no reference to the metamodel: they are cached per
+ * entity class, shared by all the persistence units mapping it. At most
+ * MAX_CACHED_PATHS paths are cached per class, the others are resolved every
+ * time.
+ *
+ */
+public class PathResolver {
+
+	public static final int MAX_CACHED_PATHS = 1000;
+
+	private static final ClassValue<ConcurrentMap<String, AttributePath>> cachedPaths =
+			new ClassValue<ConcurrentMap<String, AttributePath>>() {
+
+				@Override
+				protected ConcurrentMap<String, AttributePath> computeValue(Class<?> type) {
+					return new ConcurrentHashMap<>();
+				}
+
+			};
+
+	private static FilterParameterException notAllowed(FilterParameter<?> filter, AttributePath path,
+			String requirement) {
+		return new FilterParameterException(String.format("Operator %s not allowed on '%s' (%s): it requires %s",
+				filter.getOperator(), filter.getPath(), path.getJavaType().getSimpleName(), requirement));
+	}
+
+	/**
+	 * Return the resolver of the entity (or embeddable) type
+	 *
+	 * @param type: es root.getModel()
+	 * @return
+	 */
+	public static PathResolver of(ManagedType<?> type) {
+		if (type == null) {
+			throw new IllegalArgumentException("Type can't be null");
+		}
+		return new PathResolver(type, PathResolver.cachedPaths.get(type.getJavaType()));
+	}
+
+	private final ManagedType<?> type;
+
+	private final ConcurrentMap<String, AttributePath> paths;
+
+	private PathResolver(ManagedType<?> type, ConcurrentMap<String, AttributePath> paths) {
+		this.type = type;
+		this.paths = paths;
+	}
+
+	private AttributePath cache(AttributePath path) {
+		if (this.paths.size() >= PathResolver.MAX_CACHED_PATHS) {
+			return path;
+		}
+		final AttributePath cached = this.paths.putIfAbsent(path.getPath(), path);
+		return cached != null ? cached : path;
+	}
+
+	private Attribute<?, ?> getAttribute(ManagedType<?> type, String name, String path) {
+		try {
+			return type.getAttribute(name);
+		} catch (IllegalArgumentException e) {
+			throw new FilterParameterException(String.format("Attribute '%s' of path '%s' not found in %s", name, path,
+					type.getJavaType().getSimpleName()));
+		}
+	}
+
+	/**
+	 * Return the resolved path
+	 *
+	 * @param path: es "name", "customer.address.city"
+	 * @return
+	 * @throws FilterParameterException if an attribute of the path doesn't exist or
+	 *                                  can't be joined to reach the next one
+	 */
+	public AttributePath resolve(String path) {
+		if (path == null || path.trim().isEmpty()) {
+			throw new FilterParameterException("Path can't be null or empty");
+		}
+		AttributePath resolved = this.paths.get(path);
+		if (resolved != null) {
+			return resolved;
+		}
+
+		ManagedType<?> type = this.type;
+		int start = 0;
+		while (true) {
+			int dot = path.indexOf('.', start);
+			String name = dot < 0 ? path.substring(start) : path.substring(start, dot);
+			if (type == null) {
+				throw new FilterParameterException(
+						String.format("Path '%s' can't go through '%s': it has no attributes", path, resolved));
+			}
+
+			Attribute<?, ?> attribute = this.getAttribute(type, name, path);
+			Type<?> attributeType = attribute instanceof PluralAttribute ?
+					((PluralAttribute<?, ?, ?>) attribute).getElementType() :
+					((SingularAttribute<?, ?>) attribute).getType();
+			type = attributeType instanceof ManagedType ? (ManagedType<?>) attributeType : null;
+
+			resolved = this.cache(
+					new AttributePath(resolved, name, attribute.isCollection(), attributeType.getJavaType()));
+			if (dot < 0) {
+				return resolved;
+			}
+			start = dot + 1;
+		}
+	}
+
+	/**
+	 * Resolve the path of the filter and check that its operator can be applied to
+	 * the attribute: IS_EMPTY to collections, STARTS_WITH, ISTARTS_WITH, ILIKE,
+	 * NOT_ILIKE and MATCH to strings, IS_TRUE and IS_FALSE to booleans, GT, GE, LT
+	 * and LE to comparable types. LIKE and NOT_LIKE are allowed on any attribute
+	 * (es: enums stored as strings)
+	 *
+	 * @param filter
+	 * @return
+	 * @throws FilterParameterException if the path can't be resolved or the
+	 *                                  operator is not allowed
+	 */
+	public AttributePath validate(FilterParameter<?> filter) {
+		final AttributePath path = this.resolve(filter.getPath());
+		final Class<?> javaType = path.getJavaType();
+
+		switch (filter.getOperator()) {
+		case IS_EMPTY:
+			if (!path.isCollection()) {
+				throw PathResolver.notAllowed(filter, path, "a collection");
+			}
+			break;
+		case STARTS_WITH:
+		case ISTARTS_WITH:
+		case ILIKE:
+		case NOT_ILIKE:
+		case MATCH:
+			if (!String.class.equals(javaType)) {
+				throw PathResolver.notAllowed(filter, path, "a String");
+			}
+			break;
+		case IS_TRUE:
+		case IS_FALSE:
+			if (!Boolean.class.equals(javaType) && !boolean.class.equals(javaType)) {
+				throw PathResolver.notAllowed(filter, path, "a Boolean");
+			}
+			break;
+		case GT:
+		case GE:
+		case LT:
+		case LE:
+			if (!javaType.isPrimitive() && !Comparable.class.isAssignableFrom(javaType)) {
+				throw PathResolver.notAllowed(filter, path, "a Comparable");
+			}
+			break;
+		default:
+			break;
+		}
+		return path;
+	}
+
+}
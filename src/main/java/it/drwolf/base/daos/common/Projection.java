@@ -0,0 +1,61 @@
+package it.drwolf.base.daos.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameter object that lists the attributes selected by a projection search,
+ * instead of whole entities.<br>
+ * Attributes are expressed as dotted paths from the root entity, like the
+ * paths of FilterParameter, es: "name", "customer.address.city"
+ *
+ */
+public class Projection {
+
+	/**
+	 * Return the alias of a selected path in the Tuples returned by a projection
+	 * search: the path with "_" instead of ".", es: "customer_address_city"
+	 *
+	 * @param path
+	 * @return
+	 */
+	public static String alias(String path) {
+		return path.replace('.', '_');
+	}
+
+	/**
+	 * Return a Projection that selects the given attributes
+	 *
+	 * @param paths: es "name", "customer.address.city"
+	 * @return
+	 */
+	public static Projection of(String... paths) {
+		return new Projection(Arrays.asList(paths));
+	}
+
+	private final List<String> paths;
+
+	public Projection(List<String> paths) {
+		if (paths == null || paths.isEmpty()) {
+			throw new IllegalArgumentException("Paths can't be null or empty");
+		}
+		for (String path : paths) {
+			if (path == null || path.trim().isEmpty()) {
+				throw new IllegalArgumentException("Path can't be empty");
+			}
+		}
+		this.paths = Collections.unmodifiableList(paths);
+	}
+
+	/**
+	 *
+	 * Return the dotted paths of the selected attributes, in order
+	 *
+	 * @return
+	 */
+	public List<String> getPaths() {
+		return this.paths;
+	}
+
+}
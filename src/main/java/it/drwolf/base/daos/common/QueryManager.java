@@ -1,9 +1,11 @@
 package it.drwolf.base.daos.common;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -20,30 +22,268 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import org.hibernate.query.criteria.internal.JoinImplementor;
-import org.slf4j.Logger;
 
 import it.drwolf.base.daos.common.exceptions.FilterParameterException;
 import it.drwolf.base.daos.common.exceptions.JoinMappingException;
+import it.drwolf.base.daos.common.filter.FilterGroup;
+import it.drwolf.base.daos.common.filter.FilterOperator;
 import it.drwolf.base.daos.common.filter.FilterParameter;
 import it.drwolf.base.interfaces.Loggable;
 import it.drwolf.base.model.entities.BaseEntity;
 
 /**
- * Utility class that provides functionalities to build a javax.persistence.criteria.CriteriaQuery
+ * Utility class that provides functionalities to build a javax.persistence.criteria.CriteriaQuery.<br>
+ * Paths of filters, orders and fetches are resolved by the PathResolver of the root entity.
  *
  * @param <T>
  * @author spaladini
  */
 public class QueryManager<T> implements Loggable {
 
-	private Logger logger = this.logger();
+	private static final String PARAMETER_PREFIX = "filter";
+
+	private static final char LIKE_ESCAPE = '\\';
+
+	private static final Set<FilterOperator> escapedOperators = EnumSet.of(FilterOperator.STARTS_WITH,
+			FilterOperator.ISTARTS_WITH, FilterOperator.ILIKE, FilterOperator.NOT_ILIKE);
+
+	private static final Set<FilterOperator> parameterOperators = EnumSet.of(FilterOperator.EQ, FilterOperator.GT,
+			FilterOperator.GE, FilterOperator.LT, FilterOperator.LE, FilterOperator.LIKE, FilterOperator.NOT_LIKE,
+			FilterOperator.IN, FilterOperator.NOT_IN, FilterOperator.STARTS_WITH, FilterOperator.ISTARTS_WITH,
+			FilterOperator.ILIKE, FilterOperator.NOT_ILIKE, FilterOperator.MATCH);
+
+	/**
+	 * Escape the LIKE wildcards (and the escape character itself) in a value, so that it is matched literally
+	 */
+	private static String escapeLike(Object value) {
+		final String text = value.toString();
+		final StringBuilder escaped = new StringBuilder(text.length() + 8);
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '%' || c == '_' || c == QueryManager.LIKE_ESCAPE) {
+				escaped.append(QueryManager.LIKE_ESCAPE);
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Return the parameters bound to the filter at the given index by buildParameterizedPredicatesList, by name.
+	 * <br>
+	 * IN and NOT_IN values are split in chunks (see InListUtils), one parameter each. The parameters of a
+	 * FilterGroup are the ones of its filters.
+	 *
+	 * @param filter
+	 * @param index
+	 * @param inListChunkSize
+	 * @return
+	 */
+	public static Map<String, Object> getParameterBindings(FilterParameter filter, int index, int inListChunkSize) {
+		if (!QueryManager.hasParameter(filter) && !(filter instanceof FilterGroup)) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Object> bindings = new HashMap<>();
+		QueryManager.putParameterBindings(bindings, filter, QueryManager.getParameterName(index), inListChunkSize);
+		return bindings;
+	}
+
+	/**
+	 * Return the number of parameters bound by the filters, IN and NOT_IN values split in chunks of
+	 * inListChunkSize (see InListUtils.parameterCount)
+	 *
+	 * @param filters
+	 * @param inListChunkSize
+	 * @return
+	 */
+	public static long getParameterCount(Collection<FilterParameter> filters, int inListChunkSize) {
+		long count = 0;
+		for (FilterParameter filter : filters) {
+			if (filter instanceof FilterGroup) {
+				count += QueryManager.getParameterCount(((FilterGroup) filter).getFilters(), inListChunkSize);
+			} else if (QueryManager.isInList(filter)) {
+				count += InListUtils.parameterCount(((Collection<?>) filter.getValue()).size(), inListChunkSize);
+			} else if (QueryManager.hasParameter(filter)) {
+				count += QueryManager.isEscaped(filter) ? 2 : 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Return the name of the parameter holding the LIKE escape character of a filter
+	 */
+	private static String getEscapeParameterName(String name) {
+		return name + "_escape";
+	}
+
+	private static String getParameterName(int index) {
+		return QueryManager.PARAMETER_PREFIX + index;
+	}
+
+	/**
+	 * Return the name of the parameter of a chunk of IN values, or the prefix of the parameters of a filter in a
+	 * group: a filter is either a group or a list, so names never clash
+	 */
+	private static String getParameterName(String name, int index) {
+		return name + "_" + index;
+	}
+
+	private static void putParameterBindings(Map<String, Object> bindings, FilterParameter filter, String name,
+			int inListChunkSize) {
+		if (filter instanceof FilterGroup) {
+			final List<FilterParameter> filters = ((FilterGroup) filter).getFilters();
+			for (int i = 0; i < filters.size(); i++) {
+				QueryManager.putParameterBindings(bindings, filters.get(i), QueryManager.getParameterName(name, i),
+						inListChunkSize);
+			}
+		} else if (QueryManager.isInList(filter)) {
+			final List<List<Object>> chunks = InListUtils.partition((Collection<Object>) filter.getValue(),
+					inListChunkSize);
+			for (int chunk = 0; chunk < chunks.size(); chunk++) {
+				bindings.put(QueryManager.getParameterName(name, chunk), chunks.get(chunk));
+			}
+		} else if (QueryManager.hasParameter(filter)) {
+			bindings.put(name, QueryManager.getParameterValue(filter));
+			if (QueryManager.isEscaped(filter)) {
+				bindings.put(QueryManager.getEscapeParameterName(name), QueryManager.LIKE_ESCAPE);
+			}
+		}
+	}
+
+	/**
+	 * Return the type of the parameter that holds the filter's value (the type of the elements for IN and NOT_IN)
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static Class<?> getParameterType(FilterParameter filter) {
+		switch (filter.getOperator()) {
+		case LIKE:
+		case NOT_LIKE:
+		case STARTS_WITH:
+		case ISTARTS_WITH:
+		case ILIKE:
+		case NOT_ILIKE:
+		case MATCH:
+			return String.class;
+		case IN:
+		case NOT_IN:
+			Iterator<?> iterator = ((Collection<?>) filter.getValue()).iterator();
+			return iterator.hasNext() ? iterator.next().getClass() : Object.class;
+		default:
+			return filter.getValue().getClass();
+		}
+	}
+
+	/**
+	 * Return the value to be bound to the filter's parameter (es: LIKE values are wrapped in "%").<br>
+	 * LIKE and NOT_LIKE values are used as they are, so they can contain wildcards; the values of the other text
+	 * operators are escaped and the case insensitive ones are lower cased, to be compared with lower(attribute)
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static Object getParameterValue(FilterParameter filter) {
+		switch (filter.getOperator()) {
+		case LIKE:
+		case NOT_LIKE:
+			return "%" + filter.getValue() + "%";
+		case STARTS_WITH:
+			return QueryManager.escapeLike(filter.getValue()) + "%";
+		case ISTARTS_WITH:
+			return QueryManager.escapeLike(filter.getValue().toString().toLowerCase(Locale.ROOT)) + "%";
+		case ILIKE:
+		case NOT_ILIKE:
+			return "%" + QueryManager.escapeLike(filter.getValue().toString().toLowerCase(Locale.ROOT)) + "%";
+		default:
+			return filter.getValue();
+		}
+	}
+
+	/**
+	 * Return TRUE if the filter's predicate compares the attribute with the filter's value
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static boolean hasParameter(FilterParameter filter) {
+		return QueryManager.parameterOperators.contains(filter.getOperator());
+	}
+
+	/**
+	 * Return TRUE if the filter's predicate is a LIKE with an escape character (STARTS_WITH, ISTARTS_WITH, ILIKE
+	 * and NOT_ILIKE)
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static boolean isEscaped(FilterParameter filter) {
+		return QueryManager.escapedOperators.contains(filter.getOperator());
+	}
+
+	/**
+	 * Return TRUE if the filter's value is a list of values (IN and NOT_IN)
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static boolean isInList(FilterParameter filter) {
+		return filter.getOperator().equals(FilterOperator.IN) || filter.getOperator().equals(FilterOperator.NOT_IN);
+	}
+
+	/**
+	 * Return TRUE if the predicate of the filter joins a collection: one of the attributes of its path, but the
+	 * last one of an IS_EMPTY filter, that is tested without joins
+	 *
+	 * @param filter
+	 * @param path:  the resolved path of the filter
+	 * @return
+	 */
+	private static boolean joinsCollection(FilterParameter filter, AttributePath path) {
+		AttributePath joined = filter.getOperator().equals(FilterOperator.IS_EMPTY) ? path.getParent() : path;
+		for (; joined != null; joined = joined.getParent()) {
+			if (joined.isCollection()) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 	private Root<T> root;
 
+	private PathResolver resolver;
+
 	private Map<String, Join> joinMap = new HashMap<>();
 
+	private int inListChunkSize;
+
+	private int maxParameters;
+
 	public QueryManager(Root<T> root) {
+		this(root, InListUtils.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param root
+	 * @param inListChunkSize: the maximum number of values bound to a single IN list, larger collections are split
+	 *                         in more lists
+	 */
+	public QueryManager(Root<T> root, int inListChunkSize) {
+		this(root, inListChunkSize, InListUtils.DEFAULT_MAX_PARAMETERS);
+	}
+
+	/**
+	 * @param root
+	 * @param inListChunkSize: the maximum number of values bound to a single IN list, larger collections are split
+	 *                         in more lists
+	 * @param maxParameters:   the maximum number of parameters bound by the filters of a query (see validate)
+	 */
+	public QueryManager(Root<T> root, int inListChunkSize, int maxParameters) {
 		this.root = root;
+		this.resolver = PathResolver.of(root.getModel());
+		this.inListChunkSize = inListChunkSize;
+		this.maxParameters = maxParameters;
 	}
 
 	public void addJoin(Join join) {
@@ -85,82 +325,149 @@ public class QueryManager<T> implements Loggable {
 	 * @param order
 	 * @param makeJoin:       if the join involved in the sorting is not already present in the map: FALSE raise an Exception, TRUE make the join
 	 * @return
+	 * @throws FilterParameterException if the order field can't be resolved or reached
 	 */
 	public Order buildCriteriaOrder(CriteriaBuilder criteriaBuilder, OrderParameter order, Boolean makeJoin) {
 		if (order == null) {
 			throw new IllegalArgumentException("OrderParameter can't be null");
 		}
 
-		try {
-			Method orderMethod = criteriaBuilder.getClass()
-					.getMethod(order.getOrderType().name().toLowerCase(Locale.ROOT), Expression.class);
-			String attributeName = this.getAttributeName(order.getOrderField());
-
-			if (this.isRootAttribute(order.getOrderField())) {
-				return (Order) orderMethod.invoke(criteriaBuilder, this.getRoot().get(attributeName));
+		final AttributePath path = this.resolver.resolve(order.getOrderField());
+		final Path<?> orderPath;
+		if (path.isRootAttribute()) {
+			orderPath = this.root.get(path.getName());
+		} else {
+			Join join;
+			if (makeJoin != null && makeJoin) {
+				// Se la join che serve per l'orientamento non è presente viene creata
+				join = this.findOrMakeJoin(path.getParent());
 			} else {
-				String joinPath = this.getPreviousPath(order.getOrderField());
-
-				Join join;
-				if (makeJoin != null && makeJoin) {
-					// Se la join che serve per l'orientamento non è presente viene creata
-					join = this.findOrMakeJoin(joinPath);
-				} else {
-					// La join che serve per l'orientamento viene cercata tra quelle usate nei filtri
-					join = this.getJoin(joinPath);
-				}
+				// La join che serve per l'orientamento viene cercata tra quelle usate nei filtri
+				join = this.getJoin(path.getParent().getPath());
+			}
 
-				if (join == null) {
-					throw new FilterParameterException(
-							String.format("Field '%s.%s' not reachable", joinPath, attributeName));
-				}
-				return (Order) orderMethod.invoke(criteriaBuilder, join.get(attributeName));
+			if (join == null) {
+				throw new FilterParameterException(String.format("Field '%s' not reachable", path.getPath()));
 			}
-		} catch (InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
-			this.logger.error("Error managing ordering {}. Fall back on orderBy \"id\" ASC", order, e);
-			return criteriaBuilder.asc(this.getRoot().get("id"));
+			orderPath = join.get(path.getName());
 		}
+
+		if (order.getOrderType().equals(OrderParameter.OrderType.DESC)) {
+			return criteriaBuilder.desc(orderPath);
+		}
+		return criteriaBuilder.asc(orderPath);
 	}
 
 	/**
 	 * Build a javax.persistence.criteria.Predicate from a FilterParameter
 	 *
 	 * @param criteriaBuilder
-	 * @param from
+	 * @param from:           ignored by FilterGroups, their filters are resolved from the root
 	 * @param filter
 	 * @return
 	 */
 	public Predicate buildPredicate(CriteriaBuilder criteriaBuilder, From from, FilterParameter filter) {
+		if (filter instanceof FilterGroup) {
+			final List<FilterParameter> filters = ((FilterGroup) filter).getFilters();
+			final Predicate[] predicates = new Predicate[filters.size()];
+			for (int i = 0; i < predicates.length; i++) {
+				predicates[i] = this.buildPredicate(criteriaBuilder, this.getFrom(filters.get(i)), filters.get(i));
+			}
+			return this.combine(criteriaBuilder, (FilterGroup) filter, predicates);
+		}
+		if (QueryManager.isInList(filter)) {
+			final List<Expression> chunks = new ArrayList<>();
+			for (List<Object> chunk : InListUtils.partition((Collection<Object>) filter.getValue(),
+					this.inListChunkSize)) {
+				chunks.add(criteriaBuilder.literal(chunk));
+			}
+			return this.buildInListPredicate(criteriaBuilder, from, filter, chunks);
+		}
+
+		Expression value = null;
+		if (QueryManager.hasParameter(filter)) {
+			value = criteriaBuilder.literal(QueryManager.getParameterValue(filter));
+		}
+		return this.buildPredicate(criteriaBuilder, from, filter, value);
+	}
+
+	/**
+	 * Build a javax.persistence.criteria.Predicate from a FilterParameter, comparing the attribute with the value
+	 * expression (a literal or a parameter) instead of the filter's value
+	 *
+	 * @param criteriaBuilder
+	 * @param from
+	 * @param filter
+	 * @param value:          the expression to compare, as returned by getParameterValue(filter). It is ignored by
+	 *                        operators without value
+	 * @return
+	 */
+	public Predicate buildPredicate(CriteriaBuilder criteriaBuilder, From from, FilterParameter filter,
+			Expression value) {
+		return this.buildPredicate(criteriaBuilder, from, filter, value, null);
+	}
+
+	/**
+	 * Build a javax.persistence.criteria.Predicate from a FilterParameter, comparing the attribute with the value
+	 * expression (a literal or a parameter) instead of the filter's value
+	 *
+	 * @param criteriaBuilder
+	 * @param from
+	 * @param filter
+	 * @param value:          the expression to compare, as returned by getParameterValue(filter). It is ignored by
+	 *                        operators without value
+	 * @param escape:         the escape character of the LIKE operators that escape the value (see isEscaped), NULL
+	 *                        for a literal
+	 * @return
+	 */
+	public Predicate buildPredicate(CriteriaBuilder criteriaBuilder, From from, FilterParameter filter,
+			Expression value, Expression<Character> escape) {
+		if (escape == null && QueryManager.isEscaped(filter)) {
+			escape = criteriaBuilder.literal(QueryManager.LIKE_ESCAPE);
+		}
 
 		switch (filter.getOperator()) {
 
 		case EQ:
-			return criteriaBuilder.equal(from.get(filter.getFieldName()), filter.getValue());
+			return criteriaBuilder.equal(from.get(filter.getFieldName()), value);
 
 		case GT:
-			return criteriaBuilder.greaterThan(from.get(filter.getFieldName()), (Comparable) filter.getValue());
+			return criteriaBuilder.greaterThan(from.get(filter.getFieldName()), value);
 
 		case GE:
-			return criteriaBuilder.greaterThanOrEqualTo(from.get(filter.getFieldName()),
-					(Comparable) filter.getValue());
+			return criteriaBuilder.greaterThanOrEqualTo(from.get(filter.getFieldName()), value);
 
 		case LT:
-			return criteriaBuilder.lessThan(from.get(filter.getFieldName()), (Comparable) filter.getValue());
+			return criteriaBuilder.lessThan(from.get(filter.getFieldName()), value);
 
 		case LE:
-			return criteriaBuilder.lessThanOrEqualTo(from.get(filter.getFieldName()), (Comparable) filter.getValue());
+			return criteriaBuilder.lessThanOrEqualTo(from.get(filter.getFieldName()), value);
 
 		case LIKE:
-			return criteriaBuilder.like(from.get(filter.getFieldName()), "%" + filter.getValue() + "%");
+			return criteriaBuilder.like(this.asString(from.get(filter.getFieldName())), value);
 
 		case NOT_LIKE:
-			return criteriaBuilder.notLike(from.get(filter.getFieldName()), "%" + filter.getValue() + "%");
+			return criteriaBuilder.notLike(this.asString(from.get(filter.getFieldName())), value);
+
+		case STARTS_WITH:
+			return criteriaBuilder.like(from.get(filter.getFieldName()), value, escape);
+
+		case ISTARTS_WITH:
+		case ILIKE:
+			return criteriaBuilder.like(criteriaBuilder.lower(from.get(filter.getFieldName())), value, escape);
+
+		case NOT_ILIKE:
+			return criteriaBuilder.notLike(criteriaBuilder.lower(from.get(filter.getFieldName())), value, escape);
+
+		case MATCH:
+			return criteriaBuilder.isTrue(criteriaBuilder.function(TextSearchFunctions.MATCH_FUNCTION, Boolean.class,
+					from.get(filter.getFieldName()), value));
 
 		case IN:
-			return criteriaBuilder.in(from.get(filter.getFieldName())).value(filter.getValue());
+			return criteriaBuilder.in(from.get(filter.getFieldName())).value(value);
 
 		case NOT_IN:
-			return criteriaBuilder.not(criteriaBuilder.in(from.get(filter.getFieldName())).value(filter.getValue()));
+			return criteriaBuilder.not(criteriaBuilder.in(from.get(filter.getFieldName())).value(value));
 
 		case IS_EMPTY:
 			return criteriaBuilder.isEmpty(from.get(filter.getFieldName()));
@@ -184,29 +491,175 @@ public class QueryManager<T> implements Loggable {
 	}
 
 	/**
-	 * Build a list of javax.persistence.criteria.Predicate from a set of FilterParameter
+	 * Return the attribute as a String expression: attributes of other types (es: enums) are cast to string, so
+	 * that LIKE and NOT_LIKE can be applied to them
+	 */
+	private Expression<String> asString(Path<?> attribute) {
+		return String.class.equals(attribute.getJavaType()) ? (Path<String>) attribute : attribute.as(String.class);
+	}
+
+	/**
+	 * Combine the predicates of the filters of a FilterGroup with the operator of the group
+	 *
+	 * @param criteriaBuilder
+	 * @param group
+	 * @param predicates:     the predicates of the group's filters, in the same order
+	 * @return
+	 */
+	private Predicate combine(CriteriaBuilder criteriaBuilder, FilterGroup group, Predicate[] predicates) {
+		switch (group.getOperator()) {
+		case OR:
+			return criteriaBuilder.or(predicates);
+		case NOT:
+			return criteriaBuilder.not(predicates[0]);
+		default:
+			return criteriaBuilder.and(predicates);
+		}
+	}
+
+	/**
+	 * Build the javax.persistence.criteria.Predicate that selects the rows following a keyset pagination
+	 * cursor, using "id" as tiebreaker for rows with the same sorting value.<br>
+	 * NULL sorting values are assumed to be the greatest ones (PostgreSQL and Oracle default).
+	 *
+	 * @param criteriaBuilder
+	 * @param orderExpression: the sorting expression, NULL if rows are sorted by id only
+	 * @param orderValue:      the sorting value of the cursor row
+	 * @param id:              the id of the cursor row
+	 * @param ascending:       TRUE to select the rows greater than the cursor one, FALSE the lower ones
+	 * @return
+	 */
+	public Predicate buildKeysetPredicate(CriteriaBuilder criteriaBuilder, Expression orderExpression,
+			Object orderValue, Object id, boolean ascending) {
+		Predicate idPredicate = ascending ?
+				criteriaBuilder.greaterThan(this.root.get("id"), (Comparable) id) :
+				criteriaBuilder.lessThan(this.root.get("id"), (Comparable) id);
+
+		if (orderExpression == null) {
+			return idPredicate;
+		}
+
+		if (orderValue == null) {
+			Predicate sameValue = criteriaBuilder.and(criteriaBuilder.isNull(orderExpression), idPredicate);
+			return ascending ? sameValue : criteriaBuilder.or(sameValue, criteriaBuilder.isNotNull(orderExpression));
+		}
+
+		Predicate sameValue = criteriaBuilder.and(criteriaBuilder.equal(orderExpression, orderValue), idPredicate);
+		if (ascending) {
+			return criteriaBuilder.or(criteriaBuilder.greaterThan(orderExpression, (Comparable) orderValue), sameValue,
+					criteriaBuilder.isNull(orderExpression));
+		}
+		return criteriaBuilder.or(criteriaBuilder.lessThan(orderExpression, (Comparable) orderValue), sameValue);
+	}
+
+	/**
+	 * Build the javax.persistence.criteria.Predicate of an IN or NOT_IN filter whose values are split in chunks:
+	 * the chunks' predicates are combined in OR (IN) or in AND (NOT_IN)
+	 *
+	 * @param criteriaBuilder
+	 * @param from
+	 * @param filter
+	 * @param chunks:         an expression (a literal or a parameter) for each chunk of values
+	 * @return
+	 */
+	private Predicate buildInListPredicate(CriteriaBuilder criteriaBuilder, From from, FilterParameter filter,
+			List<Expression> chunks) {
+		final List<Predicate> predicates = new ArrayList<>(chunks.size());
+		for (Expression chunk : chunks) {
+			predicates.add(this.buildPredicate(criteriaBuilder, from, filter, chunk));
+		}
+
+		if (predicates.size() == 1) {
+			return predicates.get(0);
+		}
+		final Predicate[] predicatesArray = predicates.toArray(new Predicate[predicates.size()]);
+		if (filter.getOperator().equals(FilterOperator.IN)) {
+			return criteriaBuilder.or(predicatesArray);
+		}
+		return criteriaBuilder.and(predicatesArray);
+	}
+
+	/**
+	 * Build a list of javax.persistence.criteria.Predicate from a set of FilterParameter.<br>
+	 * The joins needed by the filters under an OR or a NOT group are LEFT joins, made before the others so that
+	 * filters sharing them don't turn them into INNER joins: rows missing an association can still match the other
+	 * filters of the OR.
 	 *
 	 * @param criteriaBuilder
 	 * @param filters
 	 * @return
+	 * @throws FilterParameterException if a filter is not valid (see validate), before building any predicate
 	 */
 	public List<Predicate> buildPredicatesList(CriteriaBuilder criteriaBuilder, Set<FilterParameter> filters) {
+		this.validate(filters);
+		this.makeOuterJoins(filters, false);
 		final List<Predicate> predicates = new ArrayList<>();
 
 		for (FilterParameter filter : filters) {
-			Predicate p;
-			if (!filter.getJoinName().equals(FilterParameter.ROOT)) {
-				Join<BaseEntity, BaseEntity> join = this.findOrMakeJoin(filter.getJoinName());
-				p = this.buildPredicate(criteriaBuilder, join, filter);
-			} else {
-				p = this.buildPredicate(criteriaBuilder, this.root, filter);
-			}
-			predicates.add(p);
+			predicates.add(this.buildPredicate(criteriaBuilder, this.getFrom(filter), filter));
 		}
 
 		return predicates;
 	}
 
+	/**
+	 * Build a list of javax.persistence.criteria.Predicate from a list of FilterParameter, comparing attributes
+	 * with named parameters instead of the filters' values, so that the same query can be executed with different
+	 * values. The values to be bound are returned by getParameterBindings(filter, index of the filter in the list,
+	 * inListChunkSize).
+	 *
+	 * @param criteriaBuilder
+	 * @param filters
+	 * @return
+	 * @throws FilterParameterException if a filter is not valid (see validate), before building any predicate
+	 */
+	public List<Predicate> buildParameterizedPredicatesList(CriteriaBuilder criteriaBuilder,
+			List<FilterParameter> filters) {
+		this.validate(filters);
+		this.makeOuterJoins(filters, false);
+		final List<Predicate> predicates = new ArrayList<>();
+
+		for (int i = 0; i < filters.size(); i++) {
+			predicates.add(this.buildParameterizedPredicate(criteriaBuilder, filters.get(i),
+					QueryManager.getParameterName(i)));
+		}
+
+		return predicates;
+	}
+
+	private Predicate buildParameterizedPredicate(CriteriaBuilder criteriaBuilder, FilterParameter filter,
+			String name) {
+		if (filter instanceof FilterGroup) {
+			final List<FilterParameter> filters = ((FilterGroup) filter).getFilters();
+			final Predicate[] predicates = new Predicate[filters.size()];
+			for (int i = 0; i < predicates.length; i++) {
+				predicates[i] = this.buildParameterizedPredicate(criteriaBuilder, filters.get(i),
+						QueryManager.getParameterName(name, i));
+			}
+			return this.combine(criteriaBuilder, (FilterGroup) filter, predicates);
+		}
+
+		if (QueryManager.isInList(filter)) {
+			final List<Expression> chunks = new ArrayList<>();
+			int chunkCount = InListUtils.chunkCount(((Collection<?>) filter.getValue()).size(), this.inListChunkSize);
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+				chunks.add(criteriaBuilder.parameter(QueryManager.getParameterType(filter),
+						QueryManager.getParameterName(name, chunk)));
+			}
+			return this.buildInListPredicate(criteriaBuilder, this.getFrom(filter), filter, chunks);
+		}
+
+		Expression value = null;
+		if (QueryManager.hasParameter(filter)) {
+			value = criteriaBuilder.parameter(QueryManager.getParameterType(filter), name);
+		}
+		Expression<Character> escape = null;
+		if (QueryManager.isEscaped(filter)) {
+			escape = criteriaBuilder.parameter(Character.class, QueryManager.getEscapeParameterName(name));
+		}
+		return this.buildPredicate(criteriaBuilder, this.getFrom(filter), filter, value, escape);
+	}
+
 	private void checkPreviousPath(String path) {
 		String previousPath = this.getPreviousPath(path);
 		if (previousPath != null && this.joinMap.get(previousPath) == null) {
@@ -221,33 +674,92 @@ public class QueryManager<T> implements Loggable {
 	 * @return
 	 */
 	public Join<BaseEntity, BaseEntity> findOrMakeJoin(String path) {
-		Join<BaseEntity, BaseEntity> join = this.joinMap.get(path);
+		return this.findOrMakeJoin(this.resolver.resolve(path));
+	}
+
+	private Join<BaseEntity, BaseEntity> findOrMakeJoin(AttributePath path) {
+		return this.findOrMakeJoin(path, null);
+	}
+
+	/**
+	 * @param path
+	 * @param joinType: the type of the missing joins of the path, NULL for the one of each attribute (see
+	 *                  AttributePath.getJoinType())
+	 * @return
+	 */
+	private Join<BaseEntity, BaseEntity> findOrMakeJoin(AttributePath path, JoinType joinType) {
+		Join<BaseEntity, BaseEntity> join = this.joinMap.get(path.getPath());
 		if (join != null) {
 			return join;
 		}
 
-		String joinAttributeName = this.getAttributeName(path);
-		String previousPath = this.getPreviousPath(path);
-
-		if (previousPath == null) {
-			join = this.root.join(joinAttributeName, JoinType.LEFT);
+		final JoinType type = joinType != null ? joinType : path.getJoinType();
+		if (path.isRootAttribute()) {
+			join = this.root.join(path.getName(), type);
 		} else {
-			Join previousJoin = this.joinMap.get(previousPath);
-			if (previousJoin == null) {
-				previousJoin = this.findOrMakeJoin(previousPath);
-			}
-			join = previousJoin.join(joinAttributeName);
+			join = this.findOrMakeJoin(path.getParent(), joinType).join(path.getName(), type);
 		}
-		this.addJoin(join);
+		// the previous joins are in the map already, no need to check them as addJoin does
+		this.joinMap.put(path.getPath(), join);
 		return join;
 	}
 
-	private String getAttributeName(String path) {
-		if (this.isRootAttribute(path)) {
-			return path;
-		} else {
-			int lastIndexOfDot = path.lastIndexOf(".");
-			return path.substring(lastIndexOfDot + 1);
+	/**
+	 * Find or make the javax.persistence.criteria.Path of an attribute based on the dotted "path", making the
+	 * joins needed to reach it
+	 *
+	 * @param path: es "name", "customer.address.city"
+	 * @return
+	 */
+	public Path<?> findOrMakePath(String path) {
+		return this.findOrMakePath(path, null);
+	}
+
+	/**
+	 * Find or make the javax.persistence.criteria.Path of an attribute based on the dotted "path", making the
+	 * missing joins needed to reach it of the given type (es: LEFT, so that rows missing an association are kept)
+	 *
+	 * @param path:     es "name", "customer.address.city"
+	 * @param joinType: the type of the missing joins, NULL for the one of each attribute (see
+	 *                  AttributePath.getJoinType())
+	 * @return
+	 */
+	public Path<?> findOrMakePath(String path, JoinType joinType) {
+		final AttributePath attributePath = this.resolver.resolve(path);
+		if (attributePath.isRootAttribute()) {
+			return this.root.get(attributePath.getName());
+		}
+		return this.findOrMakeJoin(attributePath.getParent(), joinType).get(attributePath.getName());
+	}
+
+	private From getFrom(FilterParameter filter) {
+		if (filter instanceof FilterGroup) {
+			return this.root;
+		}
+		final AttributePath path = this.resolver.resolve(filter.getPath());
+		if (!path.isRootAttribute()) {
+			return this.findOrMakeJoin(path.getParent());
+		}
+		return this.root;
+	}
+
+	/**
+	 * Make LEFT joins for the paths of the filters under an OR or a NOT group
+	 *
+	 * @param filters
+	 * @param outer:   TRUE if the filters are under an OR or a NOT group
+	 */
+	private void makeOuterJoins(Collection<FilterParameter> filters, boolean outer) {
+		for (FilterParameter filter : filters) {
+			if (filter instanceof FilterGroup) {
+				this.makeOuterJoins(((FilterGroup) filter).getFilters(),
+						outer || !filter.getOperator().equals(FilterOperator.AND));
+			} else if (outer) {
+				final AttributePath path = this.resolver.resolve(filter.getPath());
+				if (!path.isRootAttribute()) {
+					this.findOrMakeJoin(path.getParent(), JoinType.LEFT);
+				}
+			}
 		}
 	}
 
@@ -285,4 +797,38 @@ public class QueryManager<T> implements Loggable {
 		return true;
 	}
 
+	/**
+	 * Check that the paths of the filters exist and that their operators can be applied to the attributes (see
+	 * PathResolver.validate), that the filters under a NOT don't join a collection and that they don't bind more
+	 * than maxParameters parameters: a statement can't bind them all (see InListUtils).<br>
+	 * Collections are joined once for all the filters, so a filter on a collection matches when some element
+	 * matches: under a NOT it would match when some element doesn't, not when none does.
+	 *
+	 * @param filters
+	 * @throws FilterParameterException with the first filter not valid, or if the filters bind too many parameters
+	 */
+	public void validate(Collection<FilterParameter> filters) {
+		this.validatePaths(filters, false);
+		final long parameterCount = QueryManager.getParameterCount(filters, this.inListChunkSize);
+		if (parameterCount > this.maxParameters) {
+			throw new FilterParameterException(String.format("Filters bind %d parameters, at most %d are allowed",
+					parameterCount, this.maxParameters));
+		}
+	}
+
+	private void validatePaths(Collection<FilterParameter> filters, boolean negated) {
+		for (FilterParameter filter : filters) {
+			if (filter instanceof FilterGroup) {
+				this.validatePaths(((FilterGroup) filter).getFilters(),
+						negated || filter.getOperator().equals(FilterOperator.NOT));
+			} else {
+				final AttributePath path = this.resolver.validate(filter);
+				if (negated && QueryManager.joinsCollection(filter, path)) {
+					throw new FilterParameterException(
+							String.format("Filter on collection '%s' not allowed under NOT", path.getPath()));
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,61 @@
+package it.drwolf.base.daos.common;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import it.drwolf.base.daos.common.filter.FilterParameter;
+
+/**
+ * Receives the measures of the DAO's operations: latency, rows returned and
+ * JDBC statements executed, tagged by entity class, operation and filters.<br>
+ * Implementations are called by every measured operation, concurrently: they
+ * must be thread safe and cheap, formatting the filters (see filterShape) only
+ * for the samples they keep.
+ *
+ */
+public interface QueryMetrics {
+
+	/**
+	 * The measured operations of BaseEntityDAO
+	 *
+	 */
+	public enum Operation {
+		SEARCH_COUNT, SEARCH_PAGE, GET_ALL, COUNT_ALL, FIND, GET_IF_IN_ID_SET, GET_IF_NOT_IN_ID_SET, SAVE, SEARCH_LIST,
+		STREAM
+	}
+
+	/**
+	 * QueryMetrics that discards the measures: DAOs using it don't measure
+	 * anything
+	 */
+	QueryMetrics NONE = (resourceClass, operation, filters, nanos, rows, statements) -> {
+	};
+
+	/**
+	 * Return the paths and operators of the filters, without the values, es:
+	 * "amount GE, customer.name EQ"
+	 *
+	 * @param filters: can be NULL
+	 * @return
+	 */
+	static String filterShape(Set<FilterParameter> filters) {
+		if (filters == null) {
+			return "";
+		}
+		return QueryShape.sort(filters).stream().map(QueryShape::describe).collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * An operation has completed
+	 *
+	 * @param resourceClass: the entity class of the DAO
+	 * @param operation
+	 * @param filters:       the filters of the operation, NULL if it has none
+	 * @param nanos:         the latency
+	 * @param rows:          the number of rows returned
+	 * @param statements:    the number of JDBC statements executed
+	 */
+	void record(Class<?> resourceClass, Operation operation, Set<FilterParameter> filters, long nanos, long rows,
+			long statements);
+
+}
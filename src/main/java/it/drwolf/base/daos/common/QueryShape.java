@@ -0,0 +1,156 @@
+package it.drwolf.base.daos.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import it.drwolf.base.daos.common.filter.FilterGroup;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+
+/**
+ * The shape of a search query: what is filtered (paths, operators and value
+ * types, the filters of groups included), what is selected and how it is
+ * sorted, but not the values.<br>
+ * Searches with the same shape can be executed with the same parameterized
+ * query, binding different values.
+ *
+ */
+public class QueryShape {
+
+	private static class FilterShape {
+
+		private final String path;
+
+		private final FilterOperator operator;
+
+		private final Class<?> parameterType;
+
+		private final int chunks;
+
+		private final List<FilterShape> filterShapes;
+
+		FilterShape(FilterParameter filter, int inListChunkSize) {
+			this.path = filter.getPath();
+			this.operator = filter.getOperator();
+			this.parameterType = QueryManager.hasParameter(filter) ? QueryManager.getParameterType(filter) : null;
+			this.chunks = QueryManager.isInList(filter) ?
+					InListUtils.chunkCount(((Collection<?>) filter.getValue()).size(), inListChunkSize) :
+					0;
+			this.filterShapes = filter instanceof FilterGroup ?
+					QueryShape.shapes(((FilterGroup) filter).getFilters(), inListChunkSize) :
+					Collections.emptyList();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FilterShape)) {
+				return false;
+			}
+			FilterShape other = (FilterShape) obj;
+			return this.path.equals(other.path) && this.operator.equals(other.operator)
+					&& Objects.equals(this.parameterType, other.parameterType) && this.chunks == other.chunks
+					&& this.filterShapes.equals(other.filterShapes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.path, this.operator, this.parameterType, this.chunks, this.filterShapes);
+		}
+
+	}
+
+	private static final Comparator<FilterParameter> FILTER_COMPARATOR = Comparator
+			.comparing((FilterParameter f) -> f.getPath())
+			.thenComparing(f -> f.getOperator())
+			.thenComparing(f -> QueryManager.hasParameter(f) ? QueryManager.getParameterType(f).getName() : "")
+			.thenComparing(f -> f instanceof FilterGroup ? QueryShape.describe(f) : "");
+
+	/**
+	 * Return the path and the operator of the filter, without the value, es: "amount GE". Groups are described by
+	 * their filters, es: "(status IN OR assignee.id EQ)", "NOT (code LIKE)"
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static String describe(FilterParameter filter) {
+		if (!(filter instanceof FilterGroup)) {
+			return filter.getPath() + " " + filter.getOperator();
+		}
+		final List<FilterParameter> filters = ((FilterGroup) filter).getFilters();
+		if (filter.getOperator().equals(FilterOperator.NOT)) {
+			return "NOT (" + QueryShape.describe(filters.get(0)) + ")";
+		}
+		return filters.stream().map(QueryShape::describe)
+				.collect(Collectors.joining(" " + filter.getOperator() + " ", "(", ")"));
+	}
+
+	private static List<FilterShape> shapes(List<FilterParameter> filters, int inListChunkSize) {
+		final List<FilterShape> shapes = new ArrayList<>(filters.size());
+		for (FilterParameter filter : filters) {
+			shapes.add(new FilterShape(filter, inListChunkSize));
+		}
+		return shapes;
+	}
+
+	/**
+	 * Return the filters sorted in the canonical order of the shapes: queries
+	 * built from the sorted filters bind the filter at index i to the parameters
+	 * returned by QueryManager.getParameterBindings(filter, i, inListChunkSize)
+	 *
+	 * @param filters
+	 * @return
+	 */
+	public static List<FilterParameter> sort(Collection<FilterParameter> filters) {
+		List<FilterParameter> sorted = new ArrayList<>(filters);
+		sorted.sort(QueryShape.FILTER_COMPARATOR);
+		return sorted;
+	}
+
+	private final List<FilterShape> filterShapes;
+
+	private final Object queryType;
+
+	private final Class<?> resultClass;
+
+	private final String orderField;
+
+	private final OrderParameter.OrderType orderType;
+
+	/**
+	 * @param queryType:       what is selected
+	 * @param resultClass:     the class of the results
+	 * @param sortedFilters:   the filters, sorted by sort(filters)
+	 * @param order:           can be NULL
+	 * @param inListChunkSize: the chunk size of IN and NOT_IN values
+	 */
+	public QueryShape(Object queryType, Class<?> resultClass, List<FilterParameter> sortedFilters,
+			OrderParameter order, int inListChunkSize) {
+		this.queryType = queryType;
+		this.resultClass = resultClass;
+		this.filterShapes = QueryShape.shapes(sortedFilters, inListChunkSize);
+		this.orderField = order != null ? order.getOrderField() : null;
+		this.orderType = order != null ? order.getOrderType() : null;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof QueryShape)) {
+			return false;
+		}
+		QueryShape other = (QueryShape) obj;
+		return this.queryType.equals(other.queryType) && this.resultClass.equals(other.resultClass)
+				&& Objects.equals(this.orderField, other.orderField) && Objects.equals(this.orderType, other.orderType)
+				&& this.filterShapes.equals(other.filterShapes);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.queryType, this.resultClass, this.orderField, this.orderType, this.filterShapes);
+	}
+
+}
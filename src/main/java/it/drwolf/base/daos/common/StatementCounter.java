@@ -0,0 +1,106 @@
+package it.drwolf.base.daos.common;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+
+/**
+ * Counts the JDBC statements and batches executed by a Hibernate session. The
+ * difference of two getCount() is the number of statements executed in
+ * between, by that session only.<br>
+ * The counter is a listener of the session and lives as long as the session;
+ * it also tracks the measured operations running on the session, so that the
+ * operations nested in another one are not measured twice.<br>
+ * Each thread keeps the counter it used last: sessions are used by a thread at
+ * a time, so the following operations of the thread on the same session find
+ * it there. A thread that switches to another session and back registers a new
+ * counter on the session.
+ *
+ */
+public class StatementCounter extends BaseSessionEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The counter last used by the thread
+	 */
+	private static final ThreadLocal<StatementCounter> current = new ThreadLocal<>();
+
+	/**
+	 * Return the counter of the session of the EntityManager used last by the
+	 * thread, registering a new one on the session if the thread used another
+	 * session meanwhile
+	 *
+	 * @param em
+	 * @return
+	 */
+	public static StatementCounter of(EntityManager em) {
+		final Session session = em.unwrap(Session.class);
+		final StatementCounter counter = StatementCounter.current.get();
+		if (counter != null && counter.session.get() == session) {
+			return counter;
+		}
+		final StatementCounter created = new StatementCounter(session);
+		session.addEventListeners(created);
+		StatementCounter.current.set(created);
+		return created;
+	}
+
+	/**
+	 * The session of the counter, weakly referenced so that the thread doesn't
+	 * keep it after it's closed
+	 */
+	private final transient WeakReference<Session> session;
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong depth = new AtomicLong();
+
+	private StatementCounter(Session session) {
+		this.session = new WeakReference<>(session);
+	}
+
+	/**
+	 * A measured operation has started on the session
+	 *
+	 * @return TRUE if it is the outermost one, that must be measured
+	 */
+	public boolean enter() {
+		return this.depth.getAndIncrement() == 0;
+	}
+
+	/**
+	 * A measured operation started by enter() has ended
+	 */
+	public void exit() {
+		this.depth.decrementAndGet();
+	}
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Return TRUE if a measured operation is running on the session
+	 *
+	 * @return
+	 */
+	public boolean isMeasuring() {
+		return this.depth.get() > 0;
+	}
+
+	@Override
+	public void jdbcExecuteBatchStart() {
+		this.count.incrementAndGet();
+	}
+
+	@Override
+	public void jdbcExecuteStatementStart() {
+		this.count.incrementAndGet();
+	}
+
+}
@@ -0,0 +1,143 @@
+package it.drwolf.base.daos.common;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+
+/**
+ * A temporary table with a single "id" column, filled with a set of ids with
+ * JDBC batch inserts, that native queries can join instead of binding huge IN
+ * lists.<br>
+ * The table is visible only to the connection of the EntityManager and must be
+ * created in a transaction: it is dropped at the end of the transaction. On
+ * PostgreSQL close() drops it earlier; on H2, where DROP TABLE commits the
+ * transaction, close() only deletes its rows. Supported databases: PostgreSQL
+ * and H2.
+ *
+ */
+public class TemporaryIdTable implements AutoCloseable {
+
+	public static final String COLUMN = "id";
+
+	private static final AtomicLong COUNTER = new AtomicLong();
+
+	private static final int INSERT_BATCH_SIZE = 1000;
+
+	/**
+	 * Create the table and insert the ids
+	 *
+	 * @param em
+	 * @param columnType: the SQL type of the ids, es: "bigint"
+	 * @param ids
+	 * @return
+	 * @throws UnsupportedOperationException if the database is not supported
+	 * @throws IllegalStateException         if em is not in a transaction
+	 */
+	public static TemporaryIdTable create(EntityManager em, String columnType, Collection<?> ids) {
+		if (!em.isJoinedToTransaction()) {
+			throw new IllegalStateException("Temporary id tables can be created only in a transaction");
+		}
+		final Dialect dialect = em.unwrap(SessionImplementor.class).getFactory().getJdbcServices().getDialect();
+		final String name = "tmp_ids_" + TemporaryIdTable.COUNTER.incrementAndGet();
+		final String ddl;
+		if (dialect instanceof PostgreSQL81Dialect) {
+			ddl = String.format("CREATE TEMPORARY TABLE %s (%s %s PRIMARY KEY) ON COMMIT DROP", name,
+					TemporaryIdTable.COLUMN, columnType);
+		} else if (dialect instanceof H2Dialect) {
+			ddl = String.format("CREATE LOCAL TEMPORARY TABLE %s (%s %s PRIMARY KEY) ON COMMIT DROP TRANSACTIONAL",
+					name, TemporaryIdTable.COLUMN, columnType);
+		} else {
+			throw new UnsupportedOperationException(
+					String.format("Temporary id tables not supported by %s", dialect.getClass().getName()));
+		}
+
+		// pending changes must be written before the native queries that read the table
+		em.flush();
+		em.unwrap(Session.class).doWork(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(ddl);
+			}
+			try (PreparedStatement insert = connection.prepareStatement(
+					String.format("INSERT INTO %s (%s) VALUES (?)", name, TemporaryIdTable.COLUMN))) {
+				int pending = 0;
+				for (Object id : ids) {
+					insert.setObject(1, id);
+					insert.addBatch();
+					if (++pending == TemporaryIdTable.INSERT_BATCH_SIZE) {
+						insert.executeBatch();
+						pending = 0;
+					}
+				}
+				if (pending > 0) {
+					insert.executeBatch();
+				}
+			}
+		});
+		return new TemporaryIdTable(em, name, dialect instanceof PostgreSQL81Dialect);
+	}
+
+	/**
+	 * Return TRUE if temporary id tables can be created on the database of the
+	 * EntityManager
+	 *
+	 * @param em
+	 * @return
+	 */
+	public static boolean isSupported(EntityManager em) {
+		final Dialect dialect = em.unwrap(SessionImplementor.class).getFactory().getJdbcServices().getDialect();
+		return dialect instanceof PostgreSQL81Dialect || dialect instanceof H2Dialect;
+	}
+
+	private final EntityManager em;
+
+	private final String name;
+
+	private final boolean transactionalDrop;
+
+	private TemporaryIdTable(EntityManager em, String name, boolean transactionalDrop) {
+		this.em = em;
+		this.name = name;
+		this.transactionalDrop = transactionalDrop;
+	}
+
+	/**
+	 * Drop the table if the database drops tables without committing the
+	 * transaction (PostgreSQL), otherwise delete its rows and leave the table to
+	 * ON COMMIT DROP
+	 */
+	@Override
+	public void close() {
+		final String sql = this.transactionalDrop ? "DROP TABLE IF EXISTS %s" : "DELETE FROM %s";
+		this.em.unwrap(Session.class).doWork(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(String.format(sql, this.name));
+			}
+		});
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Return a NOT EXISTS condition that excludes the rows whose id column is in
+	 * the table
+	 *
+	 * @param idColumn: the qualified id column of the outer query, es: "e.id"
+	 * @return
+	 */
+	public String notExists(String idColumn) {
+		return String.format("NOT EXISTS (SELECT 1 FROM %s t WHERE t.%s = %s)", this.name, TemporaryIdTable.COLUMN,
+				idColumn);
+	}
+
+}
@@ -0,0 +1,53 @@
+package it.drwolf.base.daos.common;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.spi.MetadataBuilderInitializer;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers the SQL function used by FilterOperator.MATCH in every persistence
+ * unit, through the META-INF/services of this library.<br>
+ * On PostgreSQL the function is a full-text search, "to_tsvector(config,
+ * attribute) @@ plainto_tsquery(config, value)", that can use a GIN index on
+ * the same to_tsvector expression. The text search configuration is read from
+ * the CONFIGURATION_SETTING property of the persistence unit (default
+ * "simple"): it must be the one of the index.<br>
+ * On the other databases (es: H2 in tests) the function falls back to a case
+ * insensitive "contains" LIKE, with no index.
+ *
+ */
+public class TextSearchFunctions implements MetadataBuilderInitializer {
+
+	public static final String MATCH_FUNCTION = "text_match";
+
+	public static final String CONFIGURATION_SETTING = "hibernate-utils.text_search_configuration";
+
+	public static final String DEFAULT_CONFIGURATION = "simple";
+
+	@Override
+	public void contribute(MetadataBuilder metadataBuilder, StandardServiceRegistry serviceRegistry) {
+		final Dialect dialect = serviceRegistry.getService(JdbcServices.class).getDialect();
+		final String template;
+		if (dialect instanceof PostgreSQL81Dialect) {
+			final String configuration = serviceRegistry.getService(ConfigurationService.class).getSetting(
+					TextSearchFunctions.CONFIGURATION_SETTING, String.class,
+					TextSearchFunctions.DEFAULT_CONFIGURATION);
+			if (!configuration.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+				throw new IllegalArgumentException(
+						String.format("Invalid text search configuration '%s'", configuration));
+			}
+			template = String.format("(to_tsvector('%1$s', ?1) @@ plainto_tsquery('%1$s', ?2))", configuration);
+		} else {
+			template = "(lower(?1) like ('%' || lower(?2) || '%'))";
+		}
+		metadataBuilder.applySqlFunction(TextSearchFunctions.MATCH_FUNCTION,
+				new SQLFunctionTemplate(StandardBasicTypes.BOOLEAN, template));
+	}
+
+}
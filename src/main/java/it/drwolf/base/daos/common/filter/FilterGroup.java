@@ -0,0 +1,113 @@
+package it.drwolf.base.daos.common.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import it.drwolf.base.daos.common.exceptions.FilterParameterException;
+
+/**
+ * Filter that combines other filters, groups included, with AND, OR or NOT. It can be added to the set of filters
+ * of BaseEntityDAO.search(...) like any other filter, es:
+ *
+ * <pre>
+ * filters.add(FilterGroup.or(new CollectionAttributeFilter&lt;&gt;("status", FilterOperator.IN, statuses),
+ * 		new SingleAttributeFilter&lt;&gt;("assignee.id", FilterOperator.EQ, userId)));
+ * </pre>
+ *
+ * A group has no path: its operator is AND, OR or NOT and its value is the list of the combined filters.
+ *
+ */
+public class FilterGroup extends FilterParameter<List<FilterParameter>> {
+
+	/**
+	 * Return a group that matches when all the filters match
+	 *
+	 * @param filters
+	 * @return
+	 */
+	public static FilterGroup and(Collection<? extends FilterParameter> filters) {
+		return new FilterGroup(FilterOperator.AND, filters);
+	}
+
+	public static FilterGroup and(FilterParameter... filters) {
+		return FilterGroup.and(Arrays.asList(filters));
+	}
+
+	/**
+	 * Return TRUE if a filter of the collection, or of the groups in it at any depth, satisfies the condition.
+	 * Groups are not tested themselves.
+	 *
+	 * @param filters
+	 * @param condition
+	 * @return
+	 */
+	public static boolean anyMatch(Collection<? extends FilterParameter> filters,
+			Predicate<? super FilterParameter> condition) {
+		for (FilterParameter filter : filters) {
+			if (filter instanceof FilterGroup) {
+				if (FilterGroup.anyMatch(((FilterGroup) filter).getFilters(), condition)) {
+					return true;
+				}
+			} else if (condition.test(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return a group that matches when the filter doesn't match
+	 *
+	 * @param filter
+	 * @return
+	 */
+	public static FilterGroup not(FilterParameter filter) {
+		return new FilterGroup(FilterOperator.NOT, Collections.singletonList(filter));
+	}
+
+	/**
+	 * Return a group that matches when at least one of the filters matches
+	 *
+	 * @param filters
+	 * @return
+	 */
+	public static FilterGroup or(Collection<? extends FilterParameter> filters) {
+		return new FilterGroup(FilterOperator.OR, filters);
+	}
+
+	public static FilterGroup or(FilterParameter... filters) {
+		return FilterGroup.or(Arrays.asList(filters));
+	}
+
+	/**
+	 * @param operator: AND, OR or NOT
+	 * @param filters:  the filters to be combined, a single one for NOT
+	 */
+	public FilterGroup(FilterOperator operator, Collection<? extends FilterParameter> filters) {
+		super("", operator, filters != null ? Collections.unmodifiableList(new ArrayList<>(filters)) : null);
+		if (!FilterOperator.groupFilters.contains(operator)) {
+			throw new FilterParameterException(String.format("Operator %s not allowed!", operator));
+		}
+		if (filters == null || filters.isEmpty() || filters.stream().anyMatch(Objects::isNull)) {
+			throw new FilterParameterException("Filters of a group can't be null or empty");
+		}
+		if (operator.equals(FilterOperator.NOT) && filters.size() > 1) {
+			throw new FilterParameterException("Operator NOT allowed on a single filter only");
+		}
+	}
+
+	/**
+	 * Return the combined filters
+	 *
+	 * @return
+	 */
+	public List<FilterParameter> getFilters() {
+		return this.getValue();
+	}
+
+}
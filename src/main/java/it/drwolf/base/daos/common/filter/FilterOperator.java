@@ -5,15 +5,22 @@ import java.util.HashSet;
 import java.util.Set;
 
 public enum FilterOperator {
-	EQ, GT, GE, LT, LE, LIKE, NOT_LIKE, IS_TRUE, IS_FALSE, IN, NOT_IN, IS_NULL, IS_NOT_NULL, IS_EMPTY;
+	EQ, GT, GE, LT, LE, LIKE, NOT_LIKE, IS_TRUE, IS_FALSE, IN, NOT_IN, IS_NULL, IS_NOT_NULL, IS_EMPTY, AND, OR, NOT,
+	STARTS_WITH, ISTARTS_WITH, ILIKE, NOT_ILIKE, MATCH;
 
 	static final Set<FilterOperator> singleAttributeFiltersWithValue = new HashSet<>(
 			Arrays.asList(FilterOperator.EQ, FilterOperator.GT, FilterOperator.GE, FilterOperator.LT, FilterOperator.LE,
-					FilterOperator.LIKE, FilterOperator.NOT_LIKE, FilterOperator.IS_TRUE, FilterOperator.IS_FALSE));
+					FilterOperator.LIKE, FilterOperator.NOT_LIKE, FilterOperator.IS_TRUE, FilterOperator.IS_FALSE,
+					FilterOperator.STARTS_WITH, FilterOperator.ISTARTS_WITH, FilterOperator.ILIKE,
+					FilterOperator.NOT_ILIKE, FilterOperator.MATCH));
 
 	static final Set<FilterOperator> singleComparableAttributeFilters = new HashSet<>(
 			Arrays.asList(FilterOperator.GT, FilterOperator.GE, FilterOperator.LT, FilterOperator.LE));
 
+	static final Set<FilterOperator> singleTextAttributeFilters = new HashSet<>(
+			Arrays.asList(FilterOperator.STARTS_WITH, FilterOperator.ISTARTS_WITH, FilterOperator.ILIKE,
+					FilterOperator.NOT_ILIKE, FilterOperator.MATCH));
+
 	static final Set<FilterOperator> singleAttributeFiltersWithNoValue = new HashSet<>(
 			Arrays.asList(FilterOperator.IS_NULL, FilterOperator.IS_NOT_NULL, FilterOperator.IS_TRUE,
 					FilterOperator.IS_FALSE));
@@ -24,4 +31,7 @@ public enum FilterOperator {
 
 	static final Set<FilterOperator> collectionAttributeFiltersWithNoValue = new HashSet<>(
 			Arrays.asList(FilterOperator.IS_NULL, FilterOperator.IS_NOT_NULL));
+
+	static final Set<FilterOperator> groupFilters = new HashSet<>(
+			Arrays.asList(FilterOperator.AND, FilterOperator.OR, FilterOperator.NOT));
 }
@@ -35,8 +35,6 @@ public abstract class FilterParameter<T> {
 		this.path = path;
 		this.operator = operator;
 		this.value = value;
-
-		this.readPath();
 	}
 
 	/**
@@ -49,15 +47,19 @@ public abstract class FilterParameter<T> {
 		this.path = path.collect(Collectors.joining("."));
 		this.operator = operator;
 		this.value = value;
-
-		this.readPath();
 	}
 
 	public String getFieldName() {
+		if (this.fieldName == null) {
+			this.readPath();
+		}
 		return this.fieldName;
 	}
 
 	public String getJoinName() {
+		if (this.joinName == null) {
+			this.readPath();
+		}
 		return this.joinName;
 	}
 
@@ -81,6 +83,10 @@ public abstract class FilterParameter<T> {
 		return this.value;
 	}
 
+	/**
+	 * Split the path in join and field names, the first time they are asked: queries resolve the path through
+	 * PathResolver instead
+	 */
 	private void readPath() {
 		if (this.path.indexOf(".") < 0) {
 			this.fieldName = this.path;
@@ -44,6 +44,12 @@ public class SingleAttributeFilter<T> extends FilterParameter<T> {
 					String.format("Operator %s not allowed! %s must implement %s", operator, value.getClass(),
 							Comparable.class.getName()));
 		}
+
+		if (FilterOperator.singleTextAttributeFilters.contains(operator) && !(value instanceof String)) {
+			throw new FilterParameterException(
+					String.format("Operator %s not allowed! %s must be a %s", operator, value.getClass(),
+							String.class.getName()));
+		}
 	}
 
 	private void checkOperatorsWithoutValue(FilterOperator operator) {
@@ -0,0 +1,83 @@
+package it.drwolf.jpa;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.typesafe.config.Config;
+
+import play.inject.ApplicationLifecycle;
+
+/**
+ * Executor of the blocking JPA work started by RevisionJPAApi's async methods.
+ * <br>
+ * It has as many threads as the connections of the pool, so that tasks never
+ * wait for a connection holding a thread, and a bounded queue: when it's full
+ * new tasks are rejected with a RejectedExecutionException instead of piling
+ * up. Configuration:
+ * <ul>
+ * <li>drwolf.jpa.executor.pool-size: the number of threads, by default the
+ * maximumPoolSize of the default HikariCP pool (10)</li>
+ * <li>drwolf.jpa.executor.queue-size: the number of tasks waiting for a
+ * thread, by default 100 per thread</li>
+ * </ul>
+ *
+ */
+@Singleton
+public class JPAExecutor implements Executor {
+
+	private static int getInt(Config config, int defaultValue, String... paths) {
+		for (String path : paths) {
+			if (config.hasPath(path)) {
+				return config.getInt(path);
+			}
+		}
+		return defaultValue;
+	}
+
+	private final ThreadPoolExecutor executor;
+
+	@Inject
+	public JPAExecutor(Config config, ApplicationLifecycle lifecycle) {
+		final int poolSize = JPAExecutor.getInt(config, 10, "drwolf.jpa.executor.pool-size",
+				"db.default.hikaricp.maximumPoolSize", "play.db.prototype.hikaricp.maximumPoolSize");
+		final int queueSize = JPAExecutor.getInt(config, poolSize * 100, "drwolf.jpa.executor.queue-size");
+
+		final AtomicInteger threads = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "jpa-executor-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+
+		lifecycle.addStopHook(() -> {
+			this.executor.shutdown();
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		this.executor.execute(command);
+	}
+
+	/**
+	 * Return the number of tasks waiting for a thread
+	 *
+	 * @return
+	 */
+	public int getQueuedTasks() {
+		return this.executor.getQueue().size();
+	}
+
+}
@@ -0,0 +1,218 @@
+package it.drwolf.jpa;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.hibernate.exception.JDBCConnectionException;
+
+import com.typesafe.config.Config;
+
+import it.drwolf.base.interfaces.Loggable;
+
+/**
+ * Chooses the JPA persistence unit of read-only transactions among the
+ * configured read replicas, falling back on the primary one ("default") when
+ * there are none or all of them are ejected.<br>
+ * A replica that fails with a connection error for max-failures consecutive
+ * transactions is ejected for ejection-time, then it's tried again.
+ * Configuration:
+ * <ul>
+ * <li>drwolf.jpa.read-replicas.units: the names of the replica units, as in
+ * jpa.&lt;name&gt;, by default none</li>
+ * <li>drwolf.jpa.read-replicas.strategy: round-robin (default) or
+ * least-in-flight, the replica with fewer running transactions</li>
+ * <li>drwolf.jpa.read-replicas.max-failures: by default 3</li>
+ * <li>drwolf.jpa.read-replicas.ejection-time: by default 30s</li>
+ * </ul>
+ *
+ */
+@Singleton
+public class ReadReplicaRouter implements Loggable {
+
+	public enum Strategy {
+		ROUND_ROBIN, LEAST_IN_FLIGHT
+	}
+
+	private static class Replica {
+
+		private final String name;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger failures = new AtomicInteger();
+
+		private volatile long ejectedUntil;
+
+		Replica(String name) {
+			this.name = name;
+		}
+
+		boolean isAvailable(long now) {
+			return this.ejectedUntil == 0 || now - this.ejectedUntil >= 0;
+		}
+
+	}
+
+	public static final String PRIMARY = "default";
+
+	private static final String CONFIG_PATH = "drwolf.jpa.read-replicas";
+
+	/**
+	 * Return TRUE if the exception, or one of its causes, is a failure to reach
+	 * the database
+	 *
+	 * @param exception
+	 * @return
+	 */
+	private static boolean isConnectionFailure(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof JDBCConnectionException || cause instanceof SQLTransientConnectionException
+					|| cause instanceof SQLNonTransientConnectionException) {
+				return true;
+			}
+			if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+					&& ((SQLException) cause).getSQLState().startsWith("08")) {
+				return true;
+			}
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	private final List<Replica> replicas;
+
+	private final Strategy strategy;
+
+	private final int maxFailures;
+
+	private final long ejectionNanos;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Inject
+	public ReadReplicaRouter(Config config) {
+		final Config replicasConfig = config.hasPath(ReadReplicaRouter.CONFIG_PATH) ?
+				config.getConfig(ReadReplicaRouter.CONFIG_PATH) :
+				null;
+
+		final List<Replica> replicas = new ArrayList<>();
+		if (replicasConfig != null && replicasConfig.hasPath("units")) {
+			for (String name : replicasConfig.getStringList("units")) {
+				replicas.add(new Replica(name));
+			}
+		}
+		this.replicas = Collections.unmodifiableList(replicas);
+		this.strategy = replicasConfig != null && replicasConfig.hasPath("strategy") ?
+				Strategy.valueOf(replicasConfig.getString("strategy").replace('-', '_').toUpperCase(Locale.ROOT)) :
+				Strategy.ROUND_ROBIN;
+		this.maxFailures = replicasConfig != null && replicasConfig.hasPath("max-failures") ?
+				replicasConfig.getInt("max-failures") :
+				3;
+		this.ejectionNanos = (replicasConfig != null && replicasConfig.hasPath("ejection-time") ?
+				replicasConfig.getDuration("ejection-time") :
+				Duration.ofSeconds(30)).toNanos();
+	}
+
+	/**
+	 * Return the names of the replicas that are not ejected
+	 *
+	 * @return
+	 */
+	public List<String> getAvailableReplicas() {
+		final long now = System.nanoTime();
+		final List<String> available = new ArrayList<>();
+		for (Replica replica : this.replicas) {
+			if (replica.isAvailable(now)) {
+				available.add(replica.name);
+			}
+		}
+		return available;
+	}
+
+	private void recordFailure(Replica replica, RuntimeException exception) {
+		if (replica.failures.incrementAndGet() >= this.maxFailures) {
+			replica.failures.set(0);
+			replica.ejectedUntil = System.nanoTime() + this.ejectionNanos;
+			this.logger().warn("Read replica {} ejected for {} ms: {}", replica.name,
+					Duration.ofNanos(this.ejectionNanos).toMillis(), exception.getMessage());
+		} else {
+			this.logger().debug("Read replica {} failed: {}", replica.name, exception.getMessage());
+		}
+	}
+
+	/**
+	 * Run the function with the name of the persistence unit chosen for a read:
+	 * an available replica, or the primary one. If the replica fails with a
+	 * connection error the function is run again on the primary unit, so it must
+	 * not write.
+	 *
+	 * @param func: receives the name of the persistence unit
+	 * @return
+	 */
+	public <T> T route(Function<String, T> func) {
+		final Replica replica = this.select();
+		if (replica == null) {
+			return func.apply(ReadReplicaRouter.PRIMARY);
+		}
+
+		replica.inFlight.incrementAndGet();
+		try {
+			T result = func.apply(replica.name);
+			replica.failures.set(0);
+			return result;
+		} catch (RuntimeException e) {
+			if (!ReadReplicaRouter.isConnectionFailure(e)) {
+				throw e;
+			}
+			this.recordFailure(replica, e);
+		} finally {
+			replica.inFlight.decrementAndGet();
+		}
+		return func.apply(ReadReplicaRouter.PRIMARY);
+	}
+
+	/**
+	 * Return the replica chosen by the strategy among the available ones, NULL if
+	 * there are none
+	 *
+	 * @return
+	 */
+	private Replica select() {
+		if (this.replicas.isEmpty()) {
+			return null;
+		}
+		final long now = System.nanoTime();
+		if (this.strategy.equals(Strategy.LEAST_IN_FLIGHT)) {
+			Replica selected = null;
+			for (Replica replica : this.replicas) {
+				if (replica.isAvailable(now)
+						&& (selected == null || replica.inFlight.get() < selected.inFlight.get())) {
+					selected = replica;
+				}
+			}
+			return selected;
+		}
+		final int start = this.next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < this.replicas.size(); i++) {
+			Replica replica = this.replicas.get((start + i) % this.replicas.size());
+			if (replica.isAvailable(now)) {
+				return replica;
+			}
+		}
+		return null;
+	}
+
+}
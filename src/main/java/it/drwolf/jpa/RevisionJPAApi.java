@@ -1,19 +1,129 @@
 package it.drwolf.jpa;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import it.drwolf.base.daos.common.BoundedCache;
+import it.drwolf.base.interfaces.Loggable;
 import it.drwolf.jwt.JWTUtils;
 import play.db.jpa.JPAApi;
 import play.mvc.Http.Request;
 
-public class RevisionJPAApi {
+public class RevisionJPAApi implements Loggable {
+
+	/**
+	 * ThreadLocal of the current user that can be set with a resolver: the user
+	 * is resolved by the first get() and kept for the following ones
+	 *
+	 */
+	private static class LazyUser extends ThreadLocal<ObjectNode> {
+
+		private final ThreadLocal<Supplier<ObjectNode>> resolver = new ThreadLocal<>();
+
+		@Override
+		public ObjectNode get() {
+			final Supplier<ObjectNode> pending = this.resolver.get();
+			if (pending != null) {
+				this.resolver.remove();
+				super.set(pending.get());
+			}
+			return super.get();
+		}
+
+		/**
+		 * Return the current user if it has already been resolved, without resolving
+		 * it
+		 *
+		 * @return
+		 */
+		ObjectNode peek() {
+			return this.resolver.get() == null ? super.get() : null;
+		}
+
+		@Override
+		public void remove() {
+			this.resolver.remove();
+			super.remove();
+		}
+
+		/**
+		 * Restore a resolver returned by snapshot(), NULL removes the user
+		 *
+		 * @param snapshot
+		 */
+		void restore(Supplier<ObjectNode> snapshot) {
+			this.remove();
+			if (snapshot != null) {
+				this.resolver.set(snapshot);
+			}
+		}
+
+		@Override
+		public void set(ObjectNode value) {
+			this.resolver.remove();
+			super.set(value);
+		}
+
+		/**
+		 * Return a resolver of the current user that doesn't resolve it now, NULL if
+		 * there is no user
+		 *
+		 * @return
+		 */
+		Supplier<ObjectNode> snapshot() {
+			final Supplier<ObjectNode> pending = this.resolver.get();
+			if (pending != null) {
+				return pending;
+			}
+			final ObjectNode user = super.get();
+			return user != null ? () -> user : null;
+		}
+
+	}
+
+	private static final LazyUser lazyUser = new LazyUser();
+
+	/**
+	 * The user of the current transaction, read by audit listeners. It is
+	 * resolved from the request of withTransaction only when it's read for the
+	 * first time, and removed when the transaction ends.
+	 */
+	public static final ThreadLocal<ObjectNode> currentUser = RevisionJPAApi.lazyUser;
 
-	public static final ThreadLocal<ObjectNode> currentUser = new ThreadLocal<>();
+	private static final int USER_CACHE_SIZE = 10_000;
+
+	private static final Duration USER_CACHE_TTL = Duration.ofMinutes(30);
+
+	/**
+	 * Users verified by JWTUtils, keyed by the Authorization header, until the
+	 * verified "exp" claim. The cached nodes are never handed out: callers get
+	 * copies.
+	 */
+	private static final BoundedCache<String, ObjectNode> users = new BoundedCache<>(RevisionJPAApi.USER_CACHE_SIZE,
+			RevisionJPAApi.USER_CACHE_TTL);
+
+	/**
+	 * The read-your-writes scope of the thread, TRUE after a write
+	 */
+	private static final ThreadLocal<AtomicBoolean> writesScope = new ThreadLocal<>();
 
 	@Inject
 	private JPAApi jpaApi;
@@ -21,26 +131,278 @@ public class RevisionJPAApi {
 	@Inject
 	private JWTUtils jwtUtils;
 
+	@Inject
+	private JPAExecutor executor;
+
+	@Inject
+	private ReadReplicaRouter router;
+
+	@Inject
+	private TransactionMonitor monitor;
+
 	public RevisionJPAApi() {
 
 	}
 
-	public <T> T withReadOnlyTransaction(Function<EntityManager, T> func) {
-		return this.jpaApi.withTransaction("default", true, func::apply);
+	/**
+	 * Return how long the user verified by JWTUtils can be cached: until its
+	 * "exp" claim, ZERO if it has none, since the expiration of the token
+	 * couldn't be enforced. The unverified content of the header is never read.
+	 *
+	 * @param user
+	 * @return
+	 */
+	private Duration getTokenTtl(ObjectNode user) {
+		if (user.path("exp").canConvertToLong()) {
+			return Duration.between(Instant.now(), Instant.ofEpochSecond(user.get("exp").asLong()));
+		}
+		return Duration.ZERO;
 	}
 
-	public <T> T withTransaction(Request request, Function<EntityManager, T> func) {
-		return this.jpaApi.withTransaction(em -> {
-			RevisionJPAApi.currentUser.remove();
-			if (request != null) {
+	/**
+	 * Return the current user if it has already been read, NULL if there is none
+	 * or it hasn't been resolved from the request yet
+	 *
+	 * @return
+	 */
+	static ObjectNode peekCurrentUser() {
+		return RevisionJPAApi.lazyUser.peek();
+	}
+
+	/**
+	 * Return the user of the request verified by JWTUtils, cached by token
+	 * until its verified expiration. NULL if the request has no valid user.
+	 *
+	 * @param request
+	 * @return
+	 */
+	private ObjectNode resolveUser(Request request) {
+		final Optional<String> authorization = request.header("Authorization");
+		if (authorization.isPresent()) {
+			final ObjectNode cached = RevisionJPAApi.users.getIfPresent(authorization.get());
+			if (cached != null) {
+				return cached.deepCopy();
+			}
+		}
+
+		final ObjectNode user;
+		try {
+			user = this.jwtUtils.getUser(request);
+		} catch (Exception e) {
+			this.logger().debug("No valid user in the request: {}", e.getMessage());
+			return null;
+		}
+		if (authorization.isPresent() && user != null) {
+			RevisionJPAApi.users.put(authorization.get(), user.deepCopy(), this.getTokenTtl(user));
+		}
+		return user;
+	}
+
+	/**
+	 * Run the function inside a read-your-writes scope: after a withTransaction
+	 * of the scope, its read-only transactions use the primary persistence unit
+	 * instead of the read replicas, so they see what has been written. The scope
+	 * is propagated to the async transactions started inside it.
+	 *
+	 * @param supplier
+	 * @return
+	 */
+	public <T> T readYourWrites(Supplier<T> supplier) {
+		if (RevisionJPAApi.writesScope.get() != null) {
+			return supplier.get();
+		}
+		RevisionJPAApi.writesScope.set(new AtomicBoolean());
+		try {
+			return supplier.get();
+		} finally {
+			RevisionJPAApi.writesScope.remove();
+		}
+	}
+
+	/**
+	 * Run the function on the executor, with the given resolver of the current
+	 * user and read-your-writes scope, and return its result. If the executor is
+	 * saturated the stage fails with a RejectedExecutionException.
+	 */
+	private <T> CompletionStage<T> supplyAsync(Supplier<ObjectNode> user, Supplier<T> supplier, Executor executor) {
+		final AtomicBoolean scope = RevisionJPAApi.writesScope.get();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				RevisionJPAApi.lazyUser.restore(user);
+				if (scope != null) {
+					RevisionJPAApi.writesScope.set(scope);
+				}
 				try {
-					RevisionJPAApi.currentUser.set(this.jwtUtils.getUser(request));
-				} catch (Exception e) {
+					return supplier.get();
+				} finally {
 					RevisionJPAApi.currentUser.remove();
+					RevisionJPAApi.writesScope.remove();
 				}
-			}
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			CompletableFuture<T> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+	}
+
+	/**
+	 * Run withReadOnlyTransaction(name, func) with TransactionMonitor.UNNAMED
+	 *
+	 * @param func
+	 * @return
+	 */
+	public <T> T withReadOnlyTransaction(Function<EntityManager, T> func) {
+		return this.withReadOnlyTransaction(TransactionMonitor.UNNAMED, func);
+	}
+
+	/**
+	 * Run the function in a read-only transaction on a read replica chosen by the
+	 * ReadReplicaRouter, or on the primary persistence unit if there are none or
+	 * the read-your-writes scope has written.<br>
+	 * The Hibernate session is read-only and never flushed: loaded entities have
+	 * no snapshot and are not dirty-checked, and changes to them are not written.
+	 * The transaction is measured by the TransactionMonitor.
+	 *
+	 * @param name: the name of the transaction in the metrics
+	 * @param func
+	 * @return
+	 */
+	public <T> T withReadOnlyTransaction(String name, Function<EntityManager, T> func) {
+		final Function<EntityManager, T> readOnlyFunc = em -> {
+			final Session session = em.unwrap(Session.class);
+			session.setDefaultReadOnly(true);
+			session.setHibernateFlushMode(FlushMode.MANUAL);
 			return func.apply(em);
-		});
+		};
+		final AtomicBoolean scope = RevisionJPAApi.writesScope.get();
+		if (scope != null && scope.get()) {
+			return this.monitor.run(name, true,
+					monitored -> this.jpaApi.withTransaction(ReadReplicaRouter.PRIMARY, true, monitored), readOnlyFunc);
+		}
+		return this.monitor.run(name, true,
+				monitored -> this.router.route(unit -> this.jpaApi.withTransaction(unit, true, monitored)),
+				readOnlyFunc);
+	}
+
+	/**
+	 * Run withReadOnlyTransaction on the JPAExecutor, so that the calling thread
+	 * doesn't block on JDBC. The current user of the calling thread is visible to
+	 * the function.
+	 *
+	 * @param func
+	 * @return
+	 */
+	public <T> CompletionStage<T> withReadOnlyTransactionAsync(Function<EntityManager, T> func) {
+		return this.withReadOnlyTransactionAsync(TransactionMonitor.UNNAMED, func);
+	}
+
+	/**
+	 * Run withReadOnlyTransaction(name, func) on the JPAExecutor, as
+	 * withReadOnlyTransactionAsync(func)
+	 *
+	 * @param name: the name of the transaction in the metrics
+	 * @param func
+	 * @return
+	 */
+	public <T> CompletionStage<T> withReadOnlyTransactionAsync(String name, Function<EntityManager, T> func) {
+		return this.withReadOnlyTransactionAsync(name, func, this.executor);
+	}
+
+	/**
+	 * Run withReadOnlyTransaction(name, func) on the given executor instead of
+	 * the JPAExecutor, as withReadOnlyTransactionAsync(name, func). Work that the
+	 * threads of the JPAExecutor wait for (es: the parallel count of a search)
+	 * needs a dedicated executor, or the pool can fill with threads waiting for
+	 * tasks that are queued behind them.
+	 *
+	 * @param name:     the name of the transaction in the metrics
+	 * @param func
+	 * @param executor
+	 * @return
+	 */
+	public <T> CompletionStage<T> withReadOnlyTransactionAsync(String name, Function<EntityManager, T> func,
+			Executor executor) {
+		return this.supplyAsync(RevisionJPAApi.lazyUser.snapshot(), () -> this.withReadOnlyTransaction(name, func),
+				executor);
+	}
+
+	/**
+	 * Run withTransaction(name, request, func) with TransactionMonitor.UNNAMED
+	 *
+	 * @param request
+	 * @param func
+	 * @return
+	 */
+	public <T> T withTransaction(Request request, Function<EntityManager, T> func) {
+		return this.withTransaction(TransactionMonitor.UNNAMED, request, func);
+	}
+
+	/**
+	 * Run the function in a transaction, measured by the TransactionMonitor. The
+	 * current user is resolved from the request only if an audit listener reads
+	 * it, and it is removed when the transaction ends. Inside a read-your-writes
+	 * scope the transaction marks the scope written once it has committed:
+	 * failed and rolled back transactions don't.
+	 *
+	 * @param name:    the name of the transaction in the metrics
+	 * @param request
+	 * @param func
+	 * @return
+	 */
+	public <T> T withTransaction(String name, Request request, Function<EntityManager, T> func) {
+		final Supplier<ObjectNode> outerUser = RevisionJPAApi.lazyUser.snapshot();
+		RevisionJPAApi.lazyUser.restore(request != null ? () -> this.resolveUser(request) : null);
+		final AtomicBoolean scope = RevisionJPAApi.writesScope.get();
+		final Function<EntityManager, T> scopedFunc = scope == null ? func : em -> {
+			em.unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED) {
+						scope.set(true);
+					}
+				}
+
+				@Override
+				public void beforeCompletion() {
+				}
+
+			});
+			return func.apply(em);
+		};
+		try {
+			return this.monitor.run(name, false, monitored -> this.jpaApi.withTransaction(monitored), scopedFunc);
+		} finally {
+			RevisionJPAApi.lazyUser.restore(outerUser);
+		}
+	}
+
+	/**
+	 * Run withTransaction on the JPAExecutor, so that the calling thread doesn't
+	 * block on JDBC. The current user is read from the request as in
+	 * withTransaction.
+	 *
+	 * @param request
+	 * @param func
+	 * @return
+	 */
+	public <T> CompletionStage<T> withTransactionAsync(Request request, Function<EntityManager, T> func) {
+		return this.withTransactionAsync(TransactionMonitor.UNNAMED, request, func);
+	}
+
+	/**
+	 * Run withTransaction(name, request, func) on the JPAExecutor, as
+	 * withTransactionAsync(request, func)
+	 *
+	 * @param name:    the name of the transaction in the metrics
+	 * @param request
+	 * @param func
+	 * @return
+	 */
+	public <T> CompletionStage<T> withTransactionAsync(String name, Request request,
+			Function<EntityManager, T> func) {
+		return this.supplyAsync(null, () -> this.withTransaction(name, request, func), this.executor);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package it.drwolf.jpa;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+
+import com.typesafe.config.Config;
+
+import it.drwolf.base.interfaces.Loggable;
+import it.drwolf.jpa.metrics.DefaultTransactionMetrics;
+import it.drwolf.jpa.metrics.TransactionMetrics;
+
+/**
+ * Measures the transactions of RevisionJPAApi and reports them to the
+ * TransactionMetrics, logging the slow ones with the audit user if the
+ * transaction has read it.
+ * Configuration:
+ * <ul>
+ * <li>drwolf.jpa.metrics.class: the TransactionMetrics implementation, with a
+ * public constructor without parameters, by default
+ * DefaultTransactionMetrics</li>
+ * <li>drwolf.jpa.slow-transaction-threshold: transactions lasting longer are
+ * logged as warnings, by default 1s</li>
+ * </ul>
+ *
+ */
+@Singleton
+public class TransactionMonitor implements Loggable {
+
+	/**
+	 * Times of a running transaction, collected from the Hibernate session
+	 */
+	private static class Measure extends BaseSessionEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long start = System.nanoTime();
+
+		private long functionStart;
+
+		private boolean started;
+
+		private long acquisitionStart;
+
+		private long acquisitionNanos;
+
+		private boolean rollbackOnly;
+
+		@Override
+		public void jdbcConnectionAcquisitionEnd() {
+			this.acquisitionNanos += System.nanoTime() - this.acquisitionStart;
+		}
+
+		@Override
+		public void jdbcConnectionAcquisitionStart() {
+			this.acquisitionStart = System.nanoTime();
+		}
+
+	}
+
+	public static final String UNNAMED = "unnamed";
+
+	private final TransactionMetrics metrics;
+
+	private final long slowThresholdNanos;
+
+	@Inject
+	public TransactionMonitor(Config config) {
+		if (config.hasPath("drwolf.jpa.metrics.class")) {
+			final String className = config.getString("drwolf.jpa.metrics.class");
+			try {
+				this.metrics = (TransactionMetrics) Class.forName(className).getConstructor().newInstance();
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw new IllegalArgumentException(String.format("Invalid TransactionMetrics %s", className), e);
+			}
+		} else {
+			this.metrics = new DefaultTransactionMetrics();
+		}
+		this.slowThresholdNanos = (config.hasPath("drwolf.jpa.slow-transaction-threshold") ?
+				config.getDuration("drwolf.jpa.slow-transaction-threshold") :
+				Duration.ofSeconds(1)).toNanos();
+	}
+
+	public TransactionMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Run the function in the transaction started by the runner, measuring it.
+	 * The connection time is the time before the function starts, when the
+	 * runner creates the EntityManager and begins the transaction, plus the time
+	 * spent by the session acquiring connections while the function runs.
+	 *
+	 * @param name:     the name of the transaction in the metrics
+	 * @param readOnly
+	 * @param runner:   runs the function it receives in a transaction
+	 * @param func
+	 * @return the result of the function
+	 */
+	public <T> T run(String name, boolean readOnly, Function<Function<EntityManager, T>, T> runner,
+			Function<EntityManager, T> func) {
+		final Measure measure = new Measure();
+		this.metrics.transactionStarted(name, readOnly);
+		boolean failed = true;
+		try {
+			final T result = runner.apply(em -> {
+				measure.functionStart = System.nanoTime();
+				measure.started = true;
+				em.unwrap(Session.class).addEventListeners(measure);
+				final T value = func.apply(em);
+				final EntityTransaction transaction = em.getTransaction();
+				measure.rollbackOnly = transaction.isActive() && transaction.getRollbackOnly();
+				return value;
+			});
+			failed = false;
+			return result;
+		} finally {
+			final long duration = System.nanoTime() - measure.start;
+			final long connection = (measure.started ? measure.functionStart - measure.start : duration)
+					+ measure.acquisitionNanos;
+			final boolean rolledBack = failed || measure.rollbackOnly;
+			this.metrics.transactionFinished(name, readOnly, duration, connection, rolledBack);
+			if (duration > this.slowThresholdNanos) {
+				// peek: resolving the user here would verify its token just to log it
+				final Object user = RevisionJPAApi.peekCurrentUser();
+				this.logger().warn("Slow transaction {}{}: {} ms (connection {} ms){}, user {}", name,
+						readOnly ? " (read-only)" : "", TimeUnit.NANOSECONDS.toMillis(duration),
+						TimeUnit.NANOSECONDS.toMillis(connection), rolledBack ? ", rolled back" : "",
+						user != null ? user : "not resolved");
+			}
+		}
+	}
+
+}
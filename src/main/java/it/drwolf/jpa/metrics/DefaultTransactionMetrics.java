@@ -0,0 +1,118 @@
+package it.drwolf.jpa.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import it.drwolf.base.interfaces.Loggable;
+
+/**
+ * TransactionMetrics that keeps a TransactionStats for each name and access
+ * mode, registered as the MBean
+ * it.drwolf.jpa:type=Transactions,name=&lt;name&gt;,mode=read-only|read-write,
+ * and logs each transaction at debug level.<br>
+ * The names are bounded by maxNames for each mode: once they are reached, the
+ * transactions with new names are collected under OTHERS, so that names built
+ * from request data can't register MBeans without limits.
+ *
+ */
+public class DefaultTransactionMetrics implements TransactionMetrics, Loggable {
+
+	public static final int DEFAULT_MAX_NAMES = 500;
+
+	/**
+	 * The name of the statistics of the transactions whose names exceed maxNames
+	 */
+	public static final String OTHERS = "others";
+
+	private final Map<String, TransactionStats> readOnlyStats = new ConcurrentHashMap<>();
+
+	private final Map<String, TransactionStats> readWriteStats = new ConcurrentHashMap<>();
+
+	private final int maxNames;
+
+	public DefaultTransactionMetrics() {
+		this(DefaultTransactionMetrics.DEFAULT_MAX_NAMES);
+	}
+
+	/**
+	 * @param maxNames: the number of names kept for each mode, OTHERS included
+	 */
+	public DefaultTransactionMetrics(int maxNames) {
+		if (maxNames < 1) {
+			throw new IllegalArgumentException("maxNames must be positive");
+		}
+		this.maxNames = maxNames;
+	}
+
+	/**
+	 * Return the statistics of the transactions with the given name, NULL if
+	 * there are none or they are collected under OTHERS
+	 *
+	 * @param name
+	 * @param readOnly
+	 * @return
+	 */
+	public TransactionStats getStats(String name, boolean readOnly) {
+		return (readOnly ? this.readOnlyStats : this.readWriteStats).get(name);
+	}
+
+	private TransactionStats register(String name, boolean readOnly) {
+		final TransactionStats stats = new TransactionStats();
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(String.format("it.drwolf.jpa:type=Transactions,name=%s,mode=%s",
+					ObjectName.quote(name), readOnly ? "read-only" : "read-write"));
+			try {
+				server.registerMBean(stats, objectName);
+			} catch (InstanceAlreadyExistsException e) {
+				// left by a previous instance, es: after a reload in dev mode
+				server.unregisterMBean(objectName);
+				server.registerMBean(stats, objectName);
+			}
+		} catch (JMException e) {
+			this.logger().warn("Can't register the statistics of transaction {}: {}", name, e.getMessage());
+		}
+		return stats;
+	}
+
+	private TransactionStats statsOf(String name, boolean readOnly) {
+		final Map<String, TransactionStats> stats = readOnly ? this.readOnlyStats : this.readWriteStats;
+		final TransactionStats existing = stats.get(name);
+		if (existing != null) {
+			return existing;
+		}
+		// one slot is left to OTHERS; concurrent new names can exceed the bound by a few
+		if (stats.size() < this.maxNames - 1) {
+			return stats.computeIfAbsent(name, key -> this.register(key, readOnly));
+		}
+		return stats.computeIfAbsent(DefaultTransactionMetrics.OTHERS, key -> {
+			this.logger().warn("More than {} transaction names, the new ones are collected under {}",
+					this.maxNames - 1, key);
+			return this.register(key, readOnly);
+		});
+	}
+
+	@Override
+	public void transactionFinished(String name, boolean readOnly, long durationNanos, long connectionNanos,
+			boolean rolledBack) {
+		this.statsOf(name, readOnly).finished(durationNanos, connectionNanos, rolledBack);
+		if (this.logger().isDebugEnabled()) {
+			this.logger().debug("Transaction {}{} {} ms (connection {} ms){}", name, readOnly ? " (read-only)" : "",
+					TimeUnit.NANOSECONDS.toMillis(durationNanos), TimeUnit.NANOSECONDS.toMillis(connectionNanos),
+					rolledBack ? " rolled back" : "");
+		}
+	}
+
+	@Override
+	public void transactionStarted(String name, boolean readOnly) {
+		this.statsOf(name, readOnly).started();
+	}
+
+}
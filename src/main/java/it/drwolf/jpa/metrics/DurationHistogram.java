@@ -0,0 +1,126 @@
+package it.drwolf.jpa.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with logarithmic buckets: each power of two of
+ * microseconds is split in 8 buckets, so percentiles are reported with an
+ * error below 12.5%. Recording doesn't allocate and doesn't lock.
+ *
+ */
+public class DurationHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << DurationHistogram.SUB_BUCKET_BITS;
+
+	// up to 2^40 us, about 12 days
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int BUCKETS = (DurationHistogram.MAX_EXPONENT - DurationHistogram.SUB_BUCKET_BITS + 2)
+			* DurationHistogram.SUB_BUCKETS;
+
+	private static int bucketOf(long micros) {
+		if (micros < DurationHistogram.SUB_BUCKETS) {
+			return (int) Math.max(micros, 0);
+		}
+		final int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), DurationHistogram.MAX_EXPONENT);
+		final int subBucket = (int) (micros >>> (exponent - DurationHistogram.SUB_BUCKET_BITS))
+				& (DurationHistogram.SUB_BUCKETS - 1);
+		return (exponent - DurationHistogram.SUB_BUCKET_BITS + 1) * DurationHistogram.SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Return the highest value, in microseconds, of the bucket
+	 */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < DurationHistogram.SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / DurationHistogram.SUB_BUCKETS + DurationHistogram.SUB_BUCKET_BITS - 1;
+		final int subBucket = bucket % DurationHistogram.SUB_BUCKETS;
+		return ((long) (DurationHistogram.SUB_BUCKETS + subBucket + 1) << (exponent - DurationHistogram.SUB_BUCKET_BITS))
+				- 1;
+	}
+
+	private final AtomicLongArray buckets = new AtomicLongArray(DurationHistogram.BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalMicros = new LongAdder();
+
+	private final LongAccumulator maxMicros = new LongAccumulator(Long::max, 0);
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * Return the longest recorded duration
+	 *
+	 * @param unit
+	 * @return
+	 */
+	public double getMax(TimeUnit unit) {
+		return this.toUnit(this.maxMicros.get(), unit);
+	}
+
+	/**
+	 * Return the mean of the recorded durations, 0 if there are none
+	 *
+	 * @param unit
+	 * @return
+	 */
+	public double getMean(TimeUnit unit) {
+		final long count = this.count.sum();
+		return count > 0 ? this.toUnit(this.totalMicros.sum(), unit) / count : 0;
+	}
+
+	/**
+	 * Return the duration below which are the given fraction of the recorded
+	 * durations, 0 if there are none
+	 *
+	 * @param fraction: es 0.99
+	 * @param unit
+	 * @return
+	 */
+	public double getPercentile(double fraction, TimeUnit unit) {
+		long total = 0;
+		for (int i = 0; i < DurationHistogram.BUCKETS; i++) {
+			total += this.buckets.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < DurationHistogram.BUCKETS; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= rank) {
+				return this.toUnit(Math.min(DurationHistogram.upperBoundOf(i), this.maxMicros.get()), unit);
+			}
+		}
+		return this.getMax(unit);
+	}
+
+	/**
+	 * Record a duration
+	 *
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		this.buckets.incrementAndGet(DurationHistogram.bucketOf(micros));
+		this.count.increment();
+		this.totalMicros.add(micros);
+		this.maxMicros.accumulate(micros);
+	}
+
+	private double toUnit(long micros, TimeUnit unit) {
+		return micros * 1000.0 / unit.toNanos(1);
+	}
+
+}
@@ -0,0 +1,33 @@
+package it.drwolf.jpa.metrics;
+
+/**
+ * Receives the measures of the transactions run by RevisionJPAApi, tagged by
+ * the name given by the caller.<br>
+ * Implementations are called by every transaction, concurrently: they must be
+ * thread safe and cheap. The implementation is chosen by the
+ * drwolf.jpa.metrics.class configuration, by default DefaultTransactionMetrics.
+ *
+ */
+public interface TransactionMetrics {
+
+	/**
+	 * A transaction has finished
+	 *
+	 * @param name:            the name of the transaction
+	 * @param readOnly:        TRUE if it's a read-only transaction
+	 * @param durationNanos:   the total duration, connection included
+	 * @param connectionNanos: the time spent getting a connection
+	 * @param rolledBack:      TRUE if it has been rolled back
+	 */
+	void transactionFinished(String name, boolean readOnly, long durationNanos, long connectionNanos,
+			boolean rolledBack);
+
+	/**
+	 * A transaction has started
+	 *
+	 * @param name:     the name of the transaction
+	 * @param readOnly: TRUE if it's a read-only transaction
+	 */
+	void transactionStarted(String name, boolean readOnly);
+
+}
@@ -0,0 +1,111 @@
+package it.drwolf.jpa.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the transactions with the same name: durations, time spent
+ * getting a connection, rollbacks and transactions running now
+ *
+ */
+public class TransactionStats implements TransactionStatsMBean {
+
+	private final DurationHistogram durations = new DurationHistogram();
+
+	private final DurationHistogram connections = new DurationHistogram();
+
+	private final LongAdder rollbacks = new LongAdder();
+
+	private final LongAdder inFlight = new LongAdder();
+
+	void finished(long durationNanos, long connectionNanos, boolean rolledBack) {
+		this.inFlight.decrement();
+		this.durations.record(durationNanos);
+		this.connections.record(connectionNanos);
+		if (rolledBack) {
+			this.rollbacks.increment();
+		}
+	}
+
+	@Override
+	public double getConnectionMeanMillis() {
+		return this.connections.getMean(TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public double getConnectionP99Millis() {
+		return this.connections.getPercentile(0.99, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Return the histogram of the time spent getting a connection
+	 *
+	 * @return
+	 */
+	public DurationHistogram getConnections() {
+		return this.connections;
+	}
+
+	@Override
+	public long getCount() {
+		return this.durations.getCount();
+	}
+
+	/**
+	 * Return the histogram of the durations
+	 *
+	 * @return
+	 */
+	public DurationHistogram getDurations() {
+		return this.durations;
+	}
+
+	@Override
+	public long getInFlight() {
+		return this.inFlight.sum();
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return this.durations.getMax(TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return this.durations.getMean(TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public double getP50Millis() {
+		return this.durations.getPercentile(0.5, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public double getP95Millis() {
+		return this.durations.getPercentile(0.95, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public double getP99Millis() {
+		return this.durations.getPercentile(0.99, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public long getRollbackCount() {
+		return this.rollbacks.sum();
+	}
+
+	void started() {
+		this.inFlight.increment();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"count=%d, rollbacks=%d, inFlight=%d, mean=%.1fms, p50=%.1fms, p95=%.1fms, p99=%.1fms, max=%.1fms, connection mean=%.1fms, connection p99=%.1fms",
+				this.getCount(), this.getRollbackCount(), this.getInFlight(), this.getMeanMillis(), this.getP50Millis(),
+				this.getP95Millis(), this.getP99Millis(), this.getMaxMillis(), this.getConnectionMeanMillis(),
+				this.getConnectionP99Millis());
+	}
+
+}
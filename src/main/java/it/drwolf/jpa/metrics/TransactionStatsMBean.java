@@ -0,0 +1,30 @@
+package it.drwolf.jpa.metrics;
+
+/**
+ * JMX view of the statistics of the transactions with the same name, times
+ * are in milliseconds
+ *
+ */
+public interface TransactionStatsMBean {
+
+	double getConnectionMeanMillis();
+
+	double getConnectionP99Millis();
+
+	long getCount();
+
+	long getInFlight();
+
+	double getMaxMillis();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	long getRollbackCount();
+
+}
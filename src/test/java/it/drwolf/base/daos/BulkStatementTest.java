@@ -0,0 +1,114 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+public class BulkStatementTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+	}
+
+	private static class PartDAO extends BaseEntityDAO<Part> {
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		BulkStatementTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		BulkStatementTest.emf = Persistence.createEntityManagerFactory("test");
+	}
+
+	private List<String> codes() {
+		final EntityManager em = BulkStatementTest.emf.createEntityManager();
+		try {
+			return em.createQuery("select i.code from Item i order by i.code", String.class).getResultList();
+		} finally {
+			em.close();
+		}
+	}
+
+	@Before
+	public void fill() {
+		final EntityManager em = BulkStatementTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		em.createQuery("delete from Part").executeUpdate();
+		em.createQuery("delete from Item").executeUpdate();
+		for (String code : new String[] { "A", "B", "C" }) {
+			final Item item = new Item(code);
+			item.getParts().add(new Part(code.equals("B") ? "y" : "x"));
+			item.getParts().add(new Part("z"));
+			em.persist(item);
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private List<String> partNames() {
+		final EntityManager em = BulkStatementTest.emf.createEntityManager();
+		try {
+			return em.createQuery("select p.name from Part p order by p.name", String.class).getResultList();
+		} finally {
+			em.close();
+		}
+	}
+
+	private int run(Function<EntityManager, Integer> statement) {
+		final EntityManager em = BulkStatementTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			final int count = statement.apply(em);
+			em.getTransaction().commit();
+			return count;
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void deleteThroughAJoin() {
+		final FilterParameter itemCode = new SingleAttributeFilter<>("item.code", FilterOperator.EQ, "A");
+		assertEquals(2, this.run(em -> new PartDAO().deleteWhere(em, Collections.singleton(itemCode))));
+		assertEquals(Arrays.asList("x", "y", "z", "z"), this.partNames());
+	}
+
+	@Test
+	public void updateThroughACollection() {
+		final FilterParameter partName = new SingleAttributeFilter<>("parts.name", FilterOperator.EQ, "x");
+		assertEquals(2, this.run(em -> new ItemDAO().updateWhere(em, Collections.singleton(partName),
+				Collections.singletonMap("code", "X"))));
+		assertEquals(Arrays.asList("B", "X", "X"), this.codes());
+	}
+
+	@Test
+	public void updateWithoutJoins() {
+		final FilterParameter code = new SingleAttributeFilter<>("code", FilterOperator.EQ, "C");
+		assertEquals(1, this.run(em -> new ItemDAO().updateWhere(em, Collections.singleton(code),
+				Collections.singletonMap("code", null))));
+		assertEquals(Arrays.asList(null, "A", "B"), this.codes());
+	}
+
+}
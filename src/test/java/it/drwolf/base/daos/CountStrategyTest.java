@@ -0,0 +1,118 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.CountStrategy;
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.PaginatedData;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+public class CountStrategyTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getCountCap() {
+			return 3;
+		}
+
+	}
+
+	private static class SmallCapItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getCountCap() {
+			return 2;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		CountStrategyTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		CountStrategyTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = CountStrategyTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (int i = 0; i < 10; i++) {
+			em.persist(new Item(i < 2 ? "rare" : "common"));
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private static Set<FilterParameter> code(String code) {
+		return Collections.singleton(new SingleAttributeFilter<>("code", FilterOperator.EQ, code));
+	}
+
+	private PaginatedData<Item> search(Set<FilterParameter> filters, CountStrategy strategy) {
+		return this.search(new ItemDAO(), filters, strategy);
+	}
+
+	private PaginatedData<Item> search(BaseEntityDAO<Item> dao, Set<FilterParameter> filters, CountStrategy strategy) {
+		final EntityManager em = CountStrategyTest.emf.createEntityManager();
+		try {
+			final PaginatedData<Item> page = dao.search(em, filters, null, new PageParameter(1, 2), strategy);
+			assertEquals(2, page.getElements().size());
+			return page;
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void cappedCountAtTheCapIsExact() {
+		final PaginatedData<Item> page = this.search(new SmallCapItemDAO(), CountStrategyTest.code("rare"),
+				CountStrategy.CAPPED);
+		assertEquals(2, (long) page.getTotal());
+		assertEquals(PaginatedData.TotalType.EXACT, page.getTotalType());
+		assertEquals(CountStrategy.CAPPED, page.getCountStrategy());
+	}
+
+	@Test
+	public void cappedCountsStopAtTheCap() {
+		final PaginatedData<Item> all = this.search(Collections.emptySet(), CountStrategy.CAPPED);
+		assertEquals(3, (long) all.getTotal());
+		assertEquals(PaginatedData.TotalType.MORE_THAN, all.getTotalType());
+		assertEquals(CountStrategy.CAPPED, all.getCountStrategy());
+
+		final PaginatedData<Item> rare = this.search(CountStrategyTest.code("rare"), CountStrategy.CAPPED);
+		assertEquals(2, (long) rare.getTotal());
+		assertEquals(PaginatedData.TotalType.EXACT, rare.getTotalType());
+		assertEquals(CountStrategy.CAPPED, rare.getCountStrategy());
+	}
+
+	@Test
+	public void filteredEstimatesFallBackOnCapped() {
+		final PaginatedData<Item> page = this.search(CountStrategyTest.code("common"), CountStrategy.ESTIMATED);
+		assertEquals(3, (long) page.getTotal());
+		assertEquals(PaginatedData.TotalType.MORE_THAN, page.getTotalType());
+		assertEquals(CountStrategy.CAPPED, page.getCountStrategy());
+	}
+
+	@Test
+	public void unfilteredEstimates() {
+		final PaginatedData<Item> page = this.search(Collections.emptySet(), CountStrategy.ESTIMATED);
+		assertEquals(PaginatedData.TotalType.ESTIMATED, page.getTotalType());
+		assertEquals(CountStrategy.ESTIMATED, page.getCountStrategy());
+	}
+
+}
@@ -0,0 +1,143 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.BoundedCache;
+
+public class EntityCacheTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getEntityCacheSize() {
+			return 100;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		EntityCacheTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		EntityCacheTest.emf = Persistence.createEntityManagerFactory("test");
+	}
+
+	private Long create(String code) {
+		final EntityManager em = EntityCacheTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			final Item item = new Item(code);
+			em.persist(item);
+			em.getTransaction().commit();
+			return item.getId();
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void deleteAcceptsSnapshots() {
+		final ItemDAO dao = new ItemDAO();
+		final Long id = this.create("snapshot");
+		final EntityManager em = EntityCacheTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			dao.delete(em, dao.findSnapshot(em, id).get());
+			em.getTransaction().commit();
+			assertFalse(dao.find(em, id).isPresent());
+			assertFalse(dao.findSnapshot(em, id).isPresent());
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void findIsNotCached() {
+		final ItemDAO dao = new ItemDAO();
+		final Long id = this.create("managed");
+		EntityManager em = EntityCacheTest.emf.createEntityManager();
+		try {
+			dao.findSnapshot(em, id);
+		} finally {
+			em.close();
+		}
+
+		em = EntityCacheTest.emf.createEntityManager();
+		try {
+			final Item item = dao.get(em, id);
+			assertTrue(em.contains(item));
+			em.getTransaction().begin();
+			item.setCode("changed");
+			em.getTransaction().commit();
+			em.clear();
+			assertEquals("changed", dao.get(em, id).getCode());
+			em.getTransaction().begin();
+			dao.delete(em, dao.get(em, id));
+			em.getTransaction().commit();
+			assertFalse(dao.find(em, id).isPresent());
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void invalidationsBlockTheirSegmentOnly() {
+		final BoundedCache<Integer, String> cache = new BoundedCache<>(16, Duration.ofMinutes(1));
+		cache.get(1, key -> {
+			cache.invalidate(2);
+			return "one";
+		});
+		assertEquals("one", cache.getIfPresent(1));
+		cache.get(2, key -> {
+			cache.invalidate(2);
+			return "two";
+		});
+		assertNull(cache.getIfPresent(2));
+	}
+
+	@Test
+	public void snapshotsAreCopies() {
+		final ItemDAO dao = new ItemDAO();
+		final Long id = this.create("copy");
+		final EntityManager em = EntityCacheTest.emf.createEntityManager();
+		try {
+			final Item first = dao.findSnapshot(em, id).get();
+			final Item second = dao.findSnapshot(em, id).get();
+			assertNotSame(first, second);
+			assertFalse(em.contains(first));
+			assertFalse(em.contains(second));
+			first.setCode("not written");
+			assertEquals("copy", dao.findSnapshot(em, id).get().getCode());
+
+			em.getTransaction().begin();
+			final Item managed = dao.get(em, id);
+			managed.setCode("saved");
+			assertSame(managed, dao.update(em, managed));
+			em.getTransaction().commit();
+			assertEquals("saved", dao.findSnapshot(em, id).get().getCode());
+		} finally {
+			em.close();
+		}
+	}
+
+}
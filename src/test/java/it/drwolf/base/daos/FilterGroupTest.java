@@ -0,0 +1,126 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.PaginatedData;
+import it.drwolf.base.daos.common.exceptions.FilterParameterException;
+import it.drwolf.base.daos.common.filter.CollectionAttributeFilter;
+import it.drwolf.base.daos.common.filter.FilterGroup;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+public class FilterGroupTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		FilterGroupTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		FilterGroupTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = FilterGroupTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		final Item a = new Item("A");
+		a.getParts().add(new Part("x"));
+		a.getParts().add(new Part("y"));
+		em.persist(a);
+		final Item b = new Item("B");
+		b.getParts().add(new Part("y"));
+		em.persist(b);
+		em.persist(new Item("C"));
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private static FilterParameter code(String code) {
+		return new SingleAttributeFilter<>("code", FilterOperator.EQ, code);
+	}
+
+	private static FilterParameter partName(String name) {
+		return new SingleAttributeFilter<>("parts.name", FilterOperator.EQ, name);
+	}
+
+	/**
+	 * Return the codes of the page of results, checking that the total counts them
+	 */
+	private List<String> search(FilterParameter... filters) {
+		final EntityManager em = FilterGroupTest.emf.createEntityManager();
+		try {
+			final Set<FilterParameter> filtersSet = new HashSet<>(Arrays.asList(filters));
+			final PaginatedData<Item> page = new ItemDAO().search(em, filtersSet,
+					new OrderParameter("code", OrderParameter.OrderType.ASC), new PageParameter(1, 10));
+			final List<String> codes = page.getElements().stream().map(Item::getCode).collect(Collectors.toList());
+			assertEquals(codes.size(), (long) page.getTotal());
+			return codes;
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void andOverACollection() {
+		assertEquals(Arrays.asList("A", "B"), this.search(FilterGroupTest.partName("y")));
+		assertEquals(Arrays.asList("B"),
+				this.search(FilterGroup.and(FilterGroupTest.partName("y"), FilterGroupTest.code("B"))));
+		assertEquals(Arrays.asList(), this.search(FilterGroupTest.partName("x"), FilterGroupTest.code("B")));
+	}
+
+	@Test
+	public void notOverACollectionIsRejected() {
+		try {
+			this.search(FilterGroup.not(FilterGroupTest.partName("x")));
+			fail("NOT over a collection matches the rows with some element not matching");
+		} catch (FilterParameterException e) {
+			// expected
+		}
+		try {
+			this.search(FilterGroup.not(FilterGroup.or(FilterGroupTest.code("C"), FilterGroupTest.partName("x"))));
+			fail("NOT over a collection matches the rows with some element not matching");
+		} catch (FilterParameterException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void notWithoutJoins() {
+		assertEquals(Arrays.asList("B", "C"), this.search(FilterGroup.not(FilterGroupTest.code("A"))));
+		assertEquals(Arrays.asList("A", "B"),
+				this.search(FilterGroup.not(new CollectionAttributeFilter<>("parts", FilterOperator.IS_EMPTY,
+						Collections.emptyList()))));
+	}
+
+	@Test
+	public void orOverACollection() {
+		assertEquals(Arrays.asList("A", "C"),
+				this.search(FilterGroup.or(FilterGroupTest.partName("x"), FilterGroupTest.code("C"))));
+		assertEquals(Arrays.asList("A", "B"),
+				this.search(FilterGroup.or(FilterGroupTest.partName("x"), FilterGroupTest.partName("y"))));
+	}
+
+}
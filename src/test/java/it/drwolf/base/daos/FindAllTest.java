@@ -0,0 +1,88 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.CacheMode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.CachePolicy;
+
+public class FindAllTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	private static int first;
+
+	@AfterClass
+	public static void close() {
+		FindAllTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		FindAllTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = FindAllTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		final Item item = new Item("first");
+		em.persist(item);
+		em.persist(new Item("second"));
+		em.persist(new Item("third"));
+		em.getTransaction().commit();
+		em.close();
+		FindAllTest.first = item.getId().intValue();
+	}
+
+	private static List<String> codes(List<Item> items) {
+		return items.stream().map(item -> item != null ? item.getCode() : null).collect(Collectors.toList());
+	}
+
+	@Test
+	public void cacheModes() {
+		assertEquals(CacheMode.NORMAL, CachePolicy.NONE.getCacheMode());
+		assertEquals(CacheMode.PUT,
+				new CachePolicy(false, null, CacheRetrieveMode.BYPASS, CacheStoreMode.USE).getCacheMode());
+		assertEquals(CacheMode.GET,
+				new CachePolicy(false, null, CacheRetrieveMode.USE, CacheStoreMode.BYPASS).getCacheMode());
+		assertEquals(CacheMode.IGNORE,
+				new CachePolicy(false, null, CacheRetrieveMode.BYPASS, CacheStoreMode.BYPASS).getCacheMode());
+		assertEquals(CacheMode.REFRESH,
+				new CachePolicy(false, null, CacheRetrieveMode.BYPASS, CacheStoreMode.REFRESH).getCacheMode());
+	}
+
+	@Test
+	public void integerIdsOfLongKeys() {
+		final ItemDAO dao = new ItemDAO();
+		final List<Integer> ids = Arrays.asList(FindAllTest.first + 2, -1, FindAllTest.first);
+		final EntityManager em = FindAllTest.emf.createEntityManager();
+		try {
+			assertEquals(Arrays.asList("third", "first"), FindAllTest.codes(dao.findAll(em, ids)));
+			final List<String> withMissing = FindAllTest.codes(dao.findAll(em, ids, false));
+			assertEquals(3, withMissing.size());
+			assertNull(withMissing.get(1));
+			em.clear();
+			assertEquals(new HashSet<>(Arrays.asList("first", "third")),
+					new HashSet<>(FindAllTest.codes(dao.getIfInIdSet(em, new HashSet<>(ids), null))));
+		} finally {
+			em.close();
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.CountResult;
+import it.drwolf.base.daos.common.CountStrategy;
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.PaginatedData;
+
+public class IdTableTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getIdTableThreshold() {
+			return 2;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	private static List<Long> ids = new ArrayList<>();
+
+	@AfterClass
+	public static void close() {
+		IdTableTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		IdTableTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = IdTableTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (int i = 0; i < 10; i++) {
+			final Item item = new Item("item-" + i);
+			em.persist(item);
+			IdTableTest.ids.add(item.getId());
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private void assertPage(EntityManager em) {
+		final Set<Long> excluded = new HashSet<>(IdTableTest.ids.subList(0, 4));
+		final PaginatedData<Item> page = new ItemDAO().getIfNotInIdSet(em, excluded, new PageParameter(1, 4));
+		assertEquals(6, (long) page.getTotal());
+		assertEquals(PaginatedData.TotalType.EXACT, page.getTotalType());
+		assertEquals(CountStrategy.EXACT, page.getCountStrategy());
+		assertEquals(IdTableTest.ids.subList(4, 8),
+				page.getElements().stream().map(Item::getId).collect(Collectors.toList()));
+		assertEquals(IdTableTest.ids.subList(4, 10),
+				new ItemDAO().getIfNotInIdSet(em, excluded).stream().map(Item::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void largeTotalsAreCapped() {
+		final CountResult count = new CountResult(3_000_000_000L, PaginatedData.TotalType.EXACT, CountStrategy.EXACT);
+		assertEquals(Integer.MAX_VALUE, (long) count.getIntTotal());
+		assertEquals(PaginatedData.TotalType.MORE_THAN, count.getTotalType());
+		assertNull(new CountResult(null, PaginatedData.TotalType.UNKNOWN, null).getIntTotal());
+	}
+
+	@Test
+	public void readOnlySessionsDontUseTheTable() {
+		final EntityManager em = IdTableTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			em.unwrap(Session.class).setDefaultReadOnly(true);
+			this.assertPage(em);
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void tableInATransaction() {
+		final EntityManager em = IdTableTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			this.assertPage(em);
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void withoutATransaction() {
+		final EntityManager em = IdTableTest.emf.createEntityManager();
+		try {
+			this.assertPage(em);
+		} finally {
+			em.close();
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.InListUtils;
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.PaginatedData;
+import it.drwolf.base.daos.common.exceptions.FilterParameterException;
+import it.drwolf.base.daos.common.filter.CollectionAttributeFilter;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+
+public class InListTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+	}
+
+	private static class SmallListsItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getInListChunkSize() {
+			return 4;
+		}
+
+		@Override
+		protected int getMaxParameters() {
+			return 8;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	private static List<Long> ids = new ArrayList<>();
+
+	@AfterClass
+	public static void close() {
+		InListTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		InListTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = InListTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (int i = 0; i < 20; i++) {
+			final Item item = new Item("item-" + i);
+			em.persist(item);
+			InListTest.ids.add(item.getId());
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private static List<Long> idsOf(List<Item> items) {
+		return items.stream().map(Item::getId).collect(Collectors.toList());
+	}
+
+	/**
+	 * The first "count" ids of the items, followed by ids of no item up to "size" ids
+	 */
+	private static Set<Long> excludedIds(int count, int size) {
+		final Set<Long> excluded = new HashSet<>(InListTest.ids.subList(0, count));
+		for (long id = -1; excluded.size() < size; id--) {
+			excluded.add(id);
+		}
+		return excluded;
+	}
+
+	@Test
+	public void filtersOverTheLimitAreRejected() {
+		final List<Long> values = new ArrayList<>(InListTest.excludedIds(0, 70000));
+		final Set<FilterParameter> filters = Collections
+				.singleton(new CollectionAttributeFilter<>("id", FilterOperator.IN, values));
+		final EntityManager em = InListTest.emf.createEntityManager();
+		try {
+			new ItemDAO().search(em, filters, null, new PageParameter(1, 10));
+			fail("70000 values can't be bound to a single query");
+		} catch (FilterParameterException e) {
+			// expected
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void largeSetsAreExcludedInMemory() {
+		final Set<Long> excluded = InListTest.excludedIds(5, 70000);
+		final List<Long> expected = InListTest.ids.subList(5, 20);
+		final ItemDAO dao = new ItemDAO();
+		final EntityManager em = InListTest.emf.createEntityManager();
+		try {
+			assertEquals(expected, InListTest.idsOf(dao.getIfNotInIdSet(em, excluded)));
+
+			final PaginatedData<Item> page = dao.getIfNotInIdSet(em, excluded, new PageParameter(2, 10));
+			assertEquals(15, (long) page.getTotal());
+			assertEquals(expected.subList(10, 15), InListTest.idsOf(new ArrayList<>(page.getElements())));
+
+			try (Stream<Item> stream = dao.streamIfNotInIdSet(em, excluded)) {
+				assertEquals(expected, stream.map(Item::getId).collect(Collectors.toList()));
+			}
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void parameterCountIncludesPadding() {
+		assertEquals(0, InListUtils.parameterCount(0, 1000));
+		assertEquals(1000, InListUtils.parameterCount(1000, 1000));
+		assertEquals(1001, InListUtils.parameterCount(1001, 1000));
+		assertEquals(1512, InListUtils.parameterCount(1500, 1000));
+	}
+
+	@Test
+	public void setsOverTheLimitMatchNotInLists() {
+		final Set<Long> excluded = InListTest.excludedIds(3, 9);
+		final EntityManager em = InListTest.emf.createEntityManager();
+		try {
+			final List<Long> expected = InListTest.idsOf(new ItemDAO().getIfNotInIdSet(em, excluded));
+			assertEquals(InListTest.ids.subList(3, 20), expected);
+			assertEquals(expected, InListTest.idsOf(new SmallListsItemDAO().getIfNotInIdSet(em, excluded)));
+		} finally {
+			em.close();
+		}
+	}
+
+}
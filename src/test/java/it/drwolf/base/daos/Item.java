@@ -0,0 +1,56 @@
+package it.drwolf.base.daos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToMany;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+public class Item extends BaseEntity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private String code;
+
+	@OneToMany(cascade = CascadeType.ALL)
+	@JoinColumn(name = "item_id")
+	private List<Part> parts = new ArrayList<>();
+
+	public Item() {
+	}
+
+	public Item(String code) {
+		this.code = code;
+	}
+
+	public String getCode() {
+		return this.code;
+	}
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public List<Part> getParts() {
+		return this.parts;
+	}
+
+	public void setCode(String code) {
+		this.code = code;
+	}
+
+}
@@ -0,0 +1,113 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.CursorPaginatedData;
+import it.drwolf.base.daos.common.CursorParameter;
+import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.model.entities.BaseEntity;
+
+public class KeysetTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+	}
+
+	private static class PartDAO extends BaseEntityDAO<Part> {
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		KeysetTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		KeysetTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = KeysetTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (String code : new String[] { "B", "A", "C", "A", "B" }) {
+			final Item item = new Item(code);
+			item.getParts().add(new Part(code + "1"));
+			item.getParts().add(new Part(code + "2"));
+			em.persist(item);
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private static List<Object> ids(CursorPaginatedData<? extends BaseEntity> page) {
+		return page.getElements().stream().map(BaseEntity::getId).collect(Collectors.toList());
+	}
+
+	private List<Object> sorted(String jpql) {
+		final EntityManager em = KeysetTest.emf.createEntityManager();
+		try {
+			return em.createQuery(jpql, Object.class).getResultList();
+		} finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * Walk all the pages forward and then backward from the last one, checking that both walks see the same pages
+	 *
+	 * @return the ids of the pages, in order
+	 */
+	private <T extends BaseEntity> List<Object> walk(BaseEntityDAO<T> dao, OrderParameter order, int size) {
+		final EntityManager em = KeysetTest.emf.createEntityManager();
+		try {
+			final Set<FilterParameter> filters = Collections.emptySet();
+			final List<List<Object>> pages = new ArrayList<>();
+			CursorPaginatedData<T> page = dao.search(em, filters, order, new CursorParameter(null, size));
+			assertNull(page.getPreviousCursor());
+			pages.add(KeysetTest.ids(page));
+			while (page.getNextCursor() != null) {
+				page = dao.search(em, filters, order, new CursorParameter(page.getNextCursor(), size));
+				pages.add(KeysetTest.ids(page));
+			}
+
+			for (int i = pages.size() - 2; i >= 0; i--) {
+				page = dao.search(em, filters, order, new CursorParameter(page.getPreviousCursor(), size));
+				assertEquals(pages.get(i), KeysetTest.ids(page));
+			}
+			assertNull(page.getPreviousCursor());
+
+			return pages.stream().flatMap(List::stream).collect(Collectors.toList());
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void duplicateValuesAreSplitById() {
+		assertEquals(this.sorted("select i.id from Item i order by i.code desc, i.id desc"),
+				this.walk(new ItemDAO(), new OrderParameter("code", OrderParameter.OrderType.DESC), 2));
+	}
+
+	@Test
+	public void joinedOrderField() {
+		assertEquals(this.sorted("select p.id from Part p join p.item i order by i.code, p.id"),
+				this.walk(new PartDAO(), new OrderParameter("item.code", OrderParameter.OrderType.ASC), 3));
+	}
+
+}
@@ -0,0 +1,49 @@
+package it.drwolf.base.daos;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+
+import it.drwolf.base.model.entities.BaseEntity;
+
+@Entity
+public class Part extends BaseEntity implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private String name;
+
+	@ManyToOne
+	@JoinColumn(name = "item_id", insertable = false, updatable = false)
+	private Item item;
+
+	public Part() {
+	}
+
+	public Part(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Long getId() {
+		return this.id;
+	}
+
+	public Item getItem() {
+		return this.item;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+}
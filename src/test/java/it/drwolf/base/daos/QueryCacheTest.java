@@ -0,0 +1,103 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.PageParameter;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+public class QueryCacheTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected boolean isQueryCacheEnabled() {
+			return true;
+		}
+
+	}
+
+	private static class SmallCacheItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected boolean isQueryCacheEnabled() {
+			return true;
+		}
+
+		@Override
+		protected int getQueryCacheSize() {
+			return 2;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	@AfterClass
+	public static void close() {
+		QueryCacheTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		QueryCacheTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = QueryCacheTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (String code : new String[] { "AB-1", "ab_2", "A%B", "XYZ" }) {
+			em.persist(new Item(code));
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	private long search(BaseEntityDAO<Item> dao, FilterOperator operator, String value) {
+		final EntityManager em = QueryCacheTest.emf.createEntityManager();
+		try {
+			final FilterParameter filter = new SingleAttributeFilter<>("code", operator, value);
+			return dao.search(em, Collections.singleton(filter), null, new PageParameter(1, 10)).getTotal();
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void escapedOperatorsAreCached() {
+		final ItemDAO dao = new ItemDAO();
+		assertEquals(1, this.search(dao, FilterOperator.STARTS_WITH, "AB"));
+		assertEquals(1, this.search(dao, FilterOperator.ISTARTS_WITH, "ab_"));
+		assertEquals(1, this.search(dao, FilterOperator.ILIKE, "%"));
+		assertEquals(3, this.search(dao, FilterOperator.NOT_ILIKE, "%"));
+		// search and count of each shape
+		assertEquals(8, dao.getCompiledQueryCount());
+
+		assertEquals(2, this.search(dao, FilterOperator.ISTARTS_WITH, "ab"));
+		assertEquals(1, this.search(dao, FilterOperator.STARTS_WITH, "A%"));
+		assertEquals(8, dao.getCompiledQueryCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedShapesAreEvicted() {
+		final SmallCacheItemDAO dao = new SmallCacheItemDAO();
+		assertEquals(1, this.search(dao, FilterOperator.STARTS_WITH, "AB"));
+		assertEquals(1, this.search(dao, FilterOperator.ISTARTS_WITH, "ab_"));
+		assertEquals(1, this.search(dao, FilterOperator.ILIKE, "%"));
+		assertTrue(dao.getCompiledQueryCount() <= 2);
+
+		assertEquals(1, this.search(dao, FilterOperator.STARTS_WITH, "AB"));
+		assertEquals(3, this.search(dao, FilterOperator.NOT_ILIKE, "%"));
+		assertTrue(dao.getCompiledQueryCount() <= 2);
+	}
+
+}
@@ -0,0 +1,136 @@
+package it.drwolf.base.daos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Hibernate;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import it.drwolf.base.daos.common.OrderParameter;
+import it.drwolf.base.daos.common.filter.CollectionAttributeFilter;
+import it.drwolf.base.daos.common.filter.FilterOperator;
+import it.drwolf.base.daos.common.filter.FilterParameter;
+import it.drwolf.base.daos.common.filter.SingleAttributeFilter;
+
+public class StreamTest {
+
+	private static class ItemDAO extends BaseEntityDAO<Item> {
+
+		@Override
+		protected int getStreamDetachInterval() {
+			return 2;
+		}
+
+		@Override
+		protected int getStreamFetchSize() {
+			return 2;
+		}
+
+	}
+
+	private static EntityManagerFactory emf;
+
+	private static final OrderParameter BY_CODE = new OrderParameter("code", OrderParameter.OrderType.ASC);
+
+	@AfterClass
+	public static void close() {
+		StreamTest.emf.close();
+	}
+
+	@BeforeClass
+	public static void setup() {
+		StreamTest.emf = Persistence.createEntityManagerFactory("test");
+		final EntityManager em = StreamTest.emf.createEntityManager();
+		em.getTransaction().begin();
+		for (String code : new String[] { "A", "B", "C", "D", "E" }) {
+			final Item item = new Item(code);
+			item.getParts().add(new Part(code + "1"));
+			em.persist(item);
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	/**
+	 * Stream the items, loading their parts, and check that the EntityManager is cleared every two items
+	 *
+	 * @return the codes of the items
+	 */
+	private List<String> streamAndCheckCleared(EntityManager em, Set<FilterParameter> filters) {
+		final List<Item> read = new ArrayList<>();
+		try (Stream<Item> stream = new ItemDAO().stream(em, filters, StreamTest.BY_CODE)) {
+			stream.forEach(item -> {
+				Hibernate.initialize(item.getParts());
+				read.add(item);
+				if (read.size() == 3) {
+					// cleared before the third item: the first two and their parts are detached
+					assertFalse(em.contains(read.get(0)));
+					assertFalse(em.contains(read.get(1).getParts().get(0)));
+					assertTrue(em.contains(item));
+					assertTrue(em.contains(item.getParts().get(0)));
+				}
+			});
+		}
+		return read.stream().map(Item::getCode).collect(Collectors.toList());
+	}
+
+	@Test
+	public void inListStreamsClearTheEntityManager() {
+		final EntityManager em = StreamTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			final FilterParameter codes = new CollectionAttributeFilter<>("code", FilterOperator.IN,
+					Arrays.asList("A", "B", "C", "E"));
+			assertEquals(Arrays.asList("A", "B", "C", "E"),
+					this.streamAndCheckCleared(em, Collections.singleton(codes)));
+		} finally {
+			em.getTransaction().rollback();
+			em.close();
+		}
+	}
+
+	@Test
+	public void pendingChangesAreFlushed() {
+		final EntityManager em = StreamTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			final Item changed = new ItemDAO().search(em,
+					Collections.singleton(new SingleAttributeFilter<>("code", FilterOperator.EQ, "C")), null).get(0);
+			changed.setCode("Z");
+			assertEquals(Arrays.asList("A", "B", "D", "E", "Z"),
+					this.streamAndCheckCleared(em, Collections.emptySet()));
+		} finally {
+			em.getTransaction().rollback();
+			em.close();
+		}
+	}
+
+	@Test
+	public void streamsClearTheEntityManager() {
+		final EntityManager em = StreamTest.emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			assertEquals(Arrays.asList("A", "B", "C", "D", "E"),
+					this.streamAndCheckCleared(em, Collections.emptySet()));
+		} finally {
+			em.getTransaction().rollback();
+			em.close();
+		}
+	}
+
+}